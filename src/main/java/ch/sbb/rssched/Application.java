@@ -4,6 +4,7 @@ import ch.sbb.rssched.client.RsschedMatsimClient;
 import ch.sbb.rssched.client.RsschedMatsimRequestGenerator;
 import ch.sbb.rssched.client.config.RsschedRequestConfig;
 import ch.sbb.rssched.client.config.RsschedRequestConfigReader;
+import ch.sbb.rssched.client.dto.WireFormat;
 import ch.sbb.rssched.client.dto.response.Response;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
@@ -16,6 +17,7 @@ import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 
 import java.io.IOException;
+import java.util.Locale;
 
 /**
  * Read the request configuration from an Excel file and optionally send the request to the solver using the
@@ -23,7 +25,7 @@ import java.io.IOException;
  * <p>
  * <b>Usage:</b>
  * <pre>
- * {@code ./rssched-matsim-client <config_file> -h / --host <host> -p / --port <port> -d / --dry-run}
+ * {@code ./rssched-matsim-client <config_file> -h / --host <host> -p / --port <port> -d / --dry-run -f / --format <format> -z / --gzip}
  * </pre>
  * <p>
  * If {@code -d / --dry-run} is present, the request is not sent to the solver.
@@ -38,6 +40,8 @@ import java.io.IOException;
  *   <li>{@code -h / --host}: Scheduler base URL (default: "localhost")</li>
  *   <li>{@code -p / --port}: Scheduler port (default: 3000)</li>
  *   <li>{@code -d / --dry-run}: If present, do not send the request to the solver (default: false)</li>
+ *   <li>{@code -f / --format}: Wire format of the solver channel: json, smile or cbor (default: json)</li>
+ *   <li>{@code -z / --gzip}: If present, compress the request to the solver with gzip (default: false)</li>
  * </ul>
  * <p>
  * <b>Example with maven:</b>
@@ -51,6 +55,7 @@ public class Application {
     public static final String APP_CMD_SYNTAX = "rssched-matsim-client <config_file>";
     public static final String DEFAULT_HOST = "http://localhost";
     public static final String DEFAULT_PORT = "3000";
+    public static final String DEFAULT_FORMAT = "json";
 
     public static void main(String[] args) {
         try {
@@ -84,12 +89,15 @@ public class Application {
         String schedulerBaseUrl = cmd.getOptionValue("host", DEFAULT_HOST);
         int schedulerPort = Integer.parseInt(cmd.getOptionValue("port", DEFAULT_PORT));
         boolean sendToSolver = !cmd.hasOption("dry-run");
+        WireFormat format = parseFormat(cmd.getOptionValue("format", DEFAULT_FORMAT));
+        boolean compressRequest = cmd.hasOption("gzip");
 
         RsschedRequestConfig config = new RsschedRequestConfigReader().readExcelFile(requestConfigXlsx);
 
         if (sendToSolver) {
             // create request and send to solver
-            RsschedMatsimClient client = new RsschedMatsimClient(schedulerBaseUrl, schedulerPort);
+            RsschedMatsimClient client = new RsschedMatsimClient(schedulerBaseUrl, schedulerPort, format,
+                    compressRequest);
             Response response = client.process(config);
             System.out.println(response.getInfo());
         } else {
@@ -98,6 +106,14 @@ public class Application {
         }
     }
 
+    private static WireFormat parseFormat(String value) {
+        try {
+            return WireFormat.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Unsupported format: " + value);
+        }
+    }
+
     private static Options initOptions() {
         Options options = new Options();
 
@@ -113,6 +129,14 @@ public class Application {
         dryRunOption.setRequired(false);
         options.addOption(dryRunOption);
 
+        Option formatOption = new Option("f", "format", true, "Wire format of the solver channel (json, smile, cbor)");
+        formatOption.setRequired(false);
+        options.addOption(formatOption);
+
+        Option gzipOption = new Option("z", "gzip", false, "Compress the request to the solver with gzip");
+        gzipOption.setRequired(false);
+        options.addOption(gzipOption);
+
         return options;
     }
 }
@@ -1,6 +1,7 @@
 package ch.sbb.rssched.client;
 
 import ch.sbb.rssched.client.config.RsschedRequestConfig;
+import ch.sbb.rssched.client.dto.WireFormat;
 import ch.sbb.rssched.client.dto.response.Response;
 import ch.sbb.rssched.client.pipeline.response.ResponsePipeline;
 import lombok.RequiredArgsConstructor;
@@ -11,7 +12,8 @@ import java.util.concurrent.atomic.AtomicReference;
 /**
  * Rolling stock scheduling service client
  * <p>
- * Converts MATSim simulation run outputs to requests and sends them to the RSS service.
+ * Converts MATSim simulation run outputs to requests and sends them to the RSS service. The request is sent as compact
+ * JSON or in a binary wire format, optionally compressed with gzip.
  *
  * @author munterfi
  */
@@ -20,11 +22,17 @@ import java.util.concurrent.atomic.AtomicReference;
 public class RsschedMatsimClient {
     private final String baseUrl;
     private final int port;
+    private final WireFormat format;
+    private final boolean compressRequest;
+
+    public RsschedMatsimClient(String baseUrl, int port) {
+        this(baseUrl, port, WireFormat.JSON, false);
+    }
 
     public Response process(RsschedRequestConfig config) {
         AtomicReference<Response> response = new AtomicReference<>();
 
-        ResponsePipeline pipeline = new ResponsePipeline(config, baseUrl, port);
+        ResponsePipeline pipeline = new ResponsePipeline(config, baseUrl, port, format, compressRequest);
         pipeline.addSink(pipe -> response.set(pipe.getResponse()));
         pipeline.run();
 
@@ -202,6 +202,41 @@ public class RsschedRequestConfig {
          */
         private double deadHeadTripBeelineDistanceFactor = 5;
 
+        /**
+         * Number of threads used to route the deadhead trip matrix, the origins are partitioned across the threads.
+         * Defaults to the number of available processors.
+         */
+        private int deadHeadTripRoutingThreads = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * Contract chains of degree-2 nodes in the routing graph of the deadhead trips into single edges, which keep the
+         * accumulated length and travel time. The nodes of the stop facility links are kept.
+         */
+        private boolean deadHeadTripGraphContraction = false;
+
+        /**
+         * Algorithm used to route the deadhead trips. The Dijkstra algorithm grows one least-cost tree per origin, while
+         * the A* search with landmarks and the bidirectional Dijkstra search route each relation separately. The latter
+         * are meant for sparse point queries: If an origin has more than eight destinations to route, the least-cost
+         * tree is grown instead. Therefore, a full matrix without cached relations is always routed with the Dijkstra
+         * algorithm, the other algorithms only pay off if most relations are read from the dead head trip cache.
+         */
+        private RoutingAlgorithm deadHeadTripRoutingAlgorithm = RoutingAlgorithm.DIJKSTRA;
+
+        /**
+         * Directory of the persistent dead head trip routing cache. The cache is keyed by a fingerprint of the masked
+         * network and the routing parameters, so only missing relations and relations of locations that moved to
+         * another link are routed on subsequent runs. The directory is not pruned, cache files of outdated networks can
+         * be deleted. Optional: If not set, no cache is used.
+         */
+        private String deadHeadTripCacheDirectory;
+
+        /**
+         * Soft limit on the number of locations. Since the deadhead trip matrix grows quadratically with the number of
+         * locations, a warning is logged if the instance exceeds this limit.
+         */
+        private int locationSizeWarningLimit = 500;
+
         /**
          * Allow deadhead trips?
          */
@@ -223,9 +258,22 @@ public class RsschedRequestConfig {
          */
         private int seatDurationThreshold = 15 * 60;
 
+        /**
+         * Number of threads used in the event analysis of the passenger demand, the events are sharded by transit
+         * vehicle. The access state of the passengers is kept per vehicle, therefore it does not grow with the number
+         * of threads. With more than one thread, the events file is decompressed and parsed
+         * on separate threads as well, and the rows of the passenger file are grouped by shard instead of ordered by
+         * event time. Defaults to a single thread, which reads the events file on the calling thread.
+         */
+        private int eventAnalysisThreads = 1;
+
         public record VehicleType(String id, int capacity, int seats, int maximalFormationCount) {
         }
 
+        public enum RoutingAlgorithm {
+            DIJKSTRA, ASTAR_LANDMARKS, BIDIRECTIONAL
+        }
+
     }
 
     @NoArgsConstructor(access = AccessLevel.PRIVATE)
@@ -18,6 +18,7 @@ import java.time.LocalTime;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -114,6 +115,27 @@ public class RsschedRequestConfigReader {
                                 builder.config.getGlobal()
                                         .setDeadHeadTripBeelineDistanceFactor(valueCell.getNumericCellValue());
                                 break;
+                            case "deadHeadTripRoutingThreads":
+                                builder.config.getGlobal()
+                                        .setDeadHeadTripRoutingThreads((int) valueCell.getNumericCellValue());
+                                break;
+                            case "deadHeadTripGraphContraction":
+                                builder.config.getGlobal()
+                                        .setDeadHeadTripGraphContraction(valueCell.getBooleanCellValue());
+                                break;
+                            case "deadHeadTripRoutingAlgorithm":
+                                builder.config.getGlobal()
+                                        .setDeadHeadTripRoutingAlgorithm(RsschedRequestConfig.Global.RoutingAlgorithm.valueOf(
+                                                valueCell.getStringCellValue().trim().toUpperCase(Locale.ROOT)));
+                                break;
+                            case "deadHeadTripCacheDirectory":
+                                builder.config.getGlobal()
+                                        .setDeadHeadTripCacheDirectory(valueCell.getStringCellValue());
+                                break;
+                            case "locationSizeWarningLimit":
+                                builder.config.getGlobal()
+                                        .setLocationSizeWarningLimit((int) valueCell.getNumericCellValue());
+                                break;
                             case "forbidDeadHeadTrips":
                                 builder.config.getGlobal().setForbidDeadHeadTrips(valueCell.getBooleanCellValue());
                                 break;
@@ -127,6 +149,10 @@ public class RsschedRequestConfigReader {
                                 builder.config.getGlobal()
                                         .setSeatDurationThreshold((int) valueCell.getNumericCellValue());
                                 break;
+                            case "eventAnalysisThreads":
+                                builder.config.getGlobal()
+                                        .setEventAnalysisThreads((int) valueCell.getNumericCellValue());
+                                break;
                         }
                         break;
                     case "depot":
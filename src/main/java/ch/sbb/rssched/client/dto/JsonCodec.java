@@ -0,0 +1,68 @@
+package ch.sbb.rssched.client.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JSON codec
+ * <p>
+ * Provides the pre-configured JSON readers and writers of the request and response DTOs. All readers and writers are
+ * derived from one object mapper and share its serializer and deserializer caches, so the DTO classes are introspected
+ * only once per process. Readers and writers are immutable and thread-safe. Dates are written in ISO 8601 format.
+ *
+ * @author munterfi
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class JsonCodec {
+    private static final ObjectMapper MAPPER = createMapper(new JsonFactory());
+    private static final ObjectWriter COMPACT_WRITER = MAPPER.writer();
+    private static final ObjectWriter PRETTY_WRITER = MAPPER.writer(SerializationFeature.INDENT_OUTPUT);
+    private static final Map<Class<?>, ObjectReader> READERS = new ConcurrentHashMap<>();
+
+    /**
+     * @return the writer for compact JSON without whitespace, e.g. for transmission.
+     */
+    public static ObjectWriter compactWriter() {
+        return COMPACT_WRITER;
+    }
+
+    /**
+     * @return the writer for indented JSON, e.g. for files read by humans.
+     */
+    public static ObjectWriter prettyWriter() {
+        return PRETTY_WRITER;
+    }
+
+    /**
+     * @param type the type of the value to read.
+     * @return the reader for the type, created once per type.
+     */
+    public static ObjectReader reader(Class<?> type) {
+        return READERS.computeIfAbsent(type, MAPPER::readerFor);
+    }
+
+    static ObjectMapper mapper() {
+        return MAPPER;
+    }
+
+    /**
+     * Creates an object mapper with the DTO configuration for the data format of the factory.
+     */
+    static ObjectMapper createMapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.registerModule(new Jdk8Module());
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS); // Ensure dates are written in ISO 8601 format
+        return mapper;
+    }
+}
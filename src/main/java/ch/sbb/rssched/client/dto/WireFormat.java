@@ -0,0 +1,73 @@
+package ch.sbb.rssched.client.dto;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.Getter;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wire format of the request and response DTOs exchanged with the scheduler
+ * <p>
+ * Besides compact JSON, the binary formats Smile and CBOR are supported, which are cheaper to produce and to parse for
+ * large instances. The format is negotiated with the scheduler through the media type in the Content-Type and Accept
+ * headers. All formats use the same DTO mapping as the {@link JsonCodec}.
+ *
+ * @author munterfi
+ */
+public enum WireFormat {
+    JSON("application/json", JsonCodec.mapper()),
+    SMILE("application/x-jackson-smile", JsonCodec.createMapper(new SmileFactory())),
+    CBOR("application/cbor", JsonCodec.createMapper(new CBORFactory()));
+
+    @Getter
+    private final String mediaType;
+    private final ObjectMapper mapper;
+    private final ObjectWriter writer;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    WireFormat(String mediaType, ObjectMapper mapper) {
+        this.mediaType = mediaType;
+        this.mapper = mapper;
+        this.writer = mapper.writer();
+    }
+
+    /**
+     * Finds the wire format of a media type, ignoring its parameters like the charset.
+     *
+     * @param mediaType the media type, for example from the Content-Type header.
+     * @return the wire format, or JSON if the media type is not supported, since JSON is the default of the scheduler.
+     */
+    public static WireFormat fromMediaType(String mediaType) {
+        String type = mediaType.split(";", 2)[0].trim().toLowerCase(Locale.ROOT);
+        for (WireFormat format : values()) {
+            if (format.mediaType.equals(type)) {
+                return format;
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * @return the writer of the format, producing compact output.
+     */
+    public ObjectWriter writer() {
+        return writer;
+    }
+
+    /**
+     * @param type the type of the value to read.
+     * @return the reader of the format for the type, created once per type. The reader does not close the source, the
+     * caller owns the stream.
+     */
+    public ObjectReader reader(Class<?> type) {
+        return readers.computeIfAbsent(type,
+                key -> mapper.readerFor(key).without(JsonParser.Feature.AUTO_CLOSE_SOURCE));
+    }
+}
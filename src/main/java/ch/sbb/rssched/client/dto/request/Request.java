@@ -1,7 +1,10 @@
 package ch.sbb.rssched.client.dto.request;
 
+import ch.sbb.rssched.client.dto.WireFormat;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 
 /**
@@ -31,6 +34,39 @@ public interface Request {
      */
     String toJSON() throws JsonProcessingException;
 
+    /**
+     * Serializes the Request object as indented JSON to the output stream.
+     *
+     * @param outputStream the stream to write the JSON representation to
+     * @throws IOException if there is an error during JSON processing or writing to the stream
+     * @see #writeTo(OutputStream, boolean)
+     */
+    default void writeTo(OutputStream outputStream) throws IOException {
+        writeTo(outputStream, true);
+    }
+
+    /**
+     * Serializes the Request object as JSON to the output stream.
+     * <p>
+     * The JSON is written by a streaming generator, so the request is never held as one string in memory. The output
+     * stream is flushed, but not closed.
+     *
+     * @param outputStream the stream to write the JSON representation to
+     * @param pretty       whether to indent the JSON for readability, or to write compact JSON for transmission
+     * @throws IOException if there is an error during JSON processing or writing to the stream
+     */
+    void writeTo(OutputStream outputStream, boolean pretty) throws IOException;
+
+    /**
+     * Serializes the Request object in the wire format to the output stream. The output stream is flushed, but not
+     * closed.
+     *
+     * @param outputStream the stream to write the encoded representation to
+     * @param format       the wire format, JSON is written compact
+     * @throws IOException if there is an error during encoding or writing to the stream
+     */
+    void writeTo(OutputStream outputStream, WireFormat format) throws IOException;
+
     /**
      * The Builder interface provides methods to add various components to the scheduler request and construct the final
      * Request object.
@@ -193,7 +193,7 @@ class RequestBuilderImpl implements Request.Builder {
         if (!locations.containsKey(destinationId)) {
             throw new IllegalArgumentException("Destination location with ID " + destinationId + " does not exist.");
         }
-        tripMatrixBuilder.addRelation(originId, destinationId, duration, distance);
+        tripMatrixBuilder.ensureCapacity(locations.size()).addRelation(originId, destinationId, duration, distance);
         return this;
     }
 
@@ -1,15 +1,18 @@
 package ch.sbb.rssched.client.dto.request;
 
+import ch.sbb.rssched.client.dto.JsonCodec;
+import ch.sbb.rssched.client.dto.WireFormat;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 @NoArgsConstructor(access = AccessLevel.PACKAGE)
@@ -26,11 +29,22 @@ class RequestImpl implements Request {
     private Config parameters;
 
     public String toJSON() throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new Jdk8Module());
-        mapper.registerModule(new JavaTimeModule());
-        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS); // Ensure dates are written in ISO 8601 format
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
-        return mapper.writeValueAsString(this);
+        return JsonCodec.prettyWriter().writeValueAsString(this);
+    }
+
+    public void writeTo(OutputStream outputStream, boolean pretty) throws IOException {
+        write(outputStream, pretty ? JsonCodec.prettyWriter() : JsonCodec.compactWriter());
+    }
+
+    public void writeTo(OutputStream outputStream, WireFormat format) throws IOException {
+        write(outputStream, format.writer());
+    }
+
+    private void write(OutputStream outputStream, ObjectWriter writer) throws IOException {
+        try (JsonGenerator generator = writer.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            // the caller owns the stream, only flush it
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writer.writeValue(generator, this);
+        }
     }
 }
@@ -1,92 +1,291 @@
 package ch.sbb.rssched.client.dto.request;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 /**
+ * Dense trip matrix between all locations, the rows and columns are ordered by the sorted location indices.
+ * <p>
+ * The durations and distances are stored row by row in flat primitive int arrays, which are serialized as nested JSON
+ * arrays.
+ *
  * @author munterfi
  */
-record TripMatrix(List<String> indices, List<List<Integer>> durations, List<List<Integer>> distances) {
+@RequiredArgsConstructor
+@Getter
+@EqualsAndHashCode
+@ToString
+final class TripMatrix {
+    private final List<String> indices;
+    private final Matrix durations;
+    private final Matrix distances;
+
+    /**
+     * Square matrix of int values, stored row by row in a flat array.
+     */
+    @JsonSerialize(using = Matrix.Serializer.class)
+    static final class Matrix {
+        private final int size;
+        private final int[] values;
+
+        Matrix(int size, int[] values) {
+            if (values.length != size * size) {
+                throw new IllegalArgumentException("Matrix of size " + size + " requires " + size * size + " values.");
+            }
+            this.size = size;
+            this.values = values;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int row, int column) {
+            return values[row * size + column];
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Matrix matrix)) {
+                return false;
+            }
+            return size == matrix.size && Arrays.equals(values, matrix.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * size + Arrays.hashCode(values);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("[");
+            for (int row = 0; row < size; row++) {
+                builder.append(row == 0 ? "" : ", ")
+                        .append(Arrays.toString(Arrays.copyOfRange(values, row * size, (row + 1) * size)));
+            }
+            return builder.append(']').toString();
+        }
+
+        /**
+         * Writes the rows directly from the flat array, without creating nested arrays.
+         */
+        static final class Serializer extends StdSerializer<Matrix> {
+            Serializer() {
+                super(Matrix.class);
+            }
+
+            @Override
+            public void serialize(Matrix matrix, JsonGenerator generator, SerializerProvider provider)
+                    throws IOException {
+                generator.writeStartArray(matrix, matrix.size);
+                for (int row = 0; row < matrix.size; row++) {
+                    generator.writeArray(matrix.values, row * matrix.size, matrix.size);
+                }
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    /**
+     * Collects the relations in flat arrays and sorts them in place into the matrix, so that building the matrix does
+     * not copy it.
+     */
     static class Builder {
 
-        private final Set<String> locations = new HashSet<>();
-        private final Map<String, Map<String, Relation>> relations = new HashMap<>();
+        private static final int MISSING = -1;
+        private static final int INITIAL_CAPACITY = 16;
+
+        private final Map<String, Integer> locationIndex = new HashMap<>();
+        private final List<String> locationIds = new ArrayList<>();
+        private int capacity = INITIAL_CAPACITY;
+        private int[] durations = newMatrix(INITIAL_CAPACITY);
+        private int[] distances = newMatrix(INITIAL_CAPACITY);
+        private boolean[] origins = new boolean[INITIAL_CAPACITY];
+        private boolean[] destinations = new boolean[INITIAL_CAPACITY];
+        // true if the arrays are shared with a built matrix and must be copied before they are modified
+        private boolean shared;
 
         Builder() {
         }
 
+        private static int[] newMatrix(int capacity) {
+            int[] matrix = new int[capacity * capacity];
+            Arrays.fill(matrix, MISSING);
+            return matrix;
+        }
+
+        /**
+         * Reorders the rows and columns of the square matrix in place, the new row and column i is the old row and
+         * column order[i].
+         */
+        private static void permute(int[] matrix, int size, int[] order) {
+            int[] row = new int[size];
+            boolean[] placed = new boolean[size];
+            // rows: follow each cycle of the permutation, keeping the first row of the cycle aside
+            for (int start = 0; start < size; start++) {
+                if (placed[start]) {
+                    continue;
+                }
+                System.arraycopy(matrix, start * size, row, 0, size);
+                int current = start;
+                while (order[current] != start) {
+                    System.arraycopy(matrix, order[current] * size, matrix, current * size, size);
+                    placed[current] = true;
+                    current = order[current];
+                }
+                System.arraycopy(row, 0, matrix, current * size, size);
+                placed[current] = true;
+            }
+            // columns: reorder each row over a copy of it
+            for (int offset = 0; offset < matrix.length; offset += size) {
+                System.arraycopy(matrix, offset, row, 0, size);
+                for (int column = 0; column < size; column++) {
+                    matrix[offset + column] = row[order[column]];
+                }
+            }
+        }
+
+        /**
+         * Reserves the matrix for the expected number of locations, so that it does not grow by doubling while the
+         * relations are added.
+         *
+         * @param locationCount the expected number of locations.
+         * @return this builder.
+         */
+        public Builder ensureCapacity(int locationCount) {
+            if (locationCount > capacity) {
+                // grow by at least half, if locations and relations are added alternately
+                resize(Math.max(locationCount, capacity + (capacity >> 1)));
+            }
+            return this;
+        }
+
         public Builder addRelation(String originLocationId, String destinationLocationId, int duration, int distance) {
-            validateAndAddLocation(originLocationId);
-            validateAndAddLocation(destinationLocationId);
-            relations.computeIfAbsent(originLocationId, k -> new HashMap<>()).put(destinationLocationId,
-                    new Relation(originLocationId, destinationLocationId, duration, distance));
+            int origin = validateAndAddLocation(originLocationId);
+            int destination = validateAndAddLocation(destinationLocationId);
+            if (shared) {
+                durations = durations.clone();
+                distances = distances.clone();
+                shared = false;
+            }
+            durations[origin * capacity + destination] = duration;
+            distances[origin * capacity + destination] = distance;
+            origins[origin] = true;
+            destinations[destination] = true;
             return this;
         }
 
-        private void validateAndAddLocation(String locationId) {
+        private int validateAndAddLocation(String locationId) {
             if (locationId == null || locationId.isEmpty()) {
                 throw new IllegalArgumentException("Location ID cannot be null or empty.");
             }
-            locations.add(locationId);
+            Integer index = locationIndex.get(locationId);
+            if (index != null) {
+                return index;
+            }
+            int newIndex = locationIds.size();
+            if (newIndex == capacity) {
+                resize(capacity * 2);
+            }
+            locationIndex.put(locationId, newIndex);
+            locationIds.add(locationId);
+            return newIndex;
+        }
+
+        private void resize(int newCapacity) {
+            int[] newDurations = newMatrix(newCapacity);
+            int[] newDistances = newMatrix(newCapacity);
+            int columns = Math.min(capacity, newCapacity);
+            for (int row = 0; row < locationIds.size(); row++) {
+                System.arraycopy(durations, row * capacity, newDurations, row * newCapacity, columns);
+                System.arraycopy(distances, row * capacity, newDistances, row * newCapacity, columns);
+            }
+            durations = newDurations;
+            distances = newDistances;
+            origins = Arrays.copyOf(origins, newCapacity);
+            destinations = Arrays.copyOf(destinations, newCapacity);
+            capacity = newCapacity;
+            shared = false;
         }
 
         public boolean containsRelation(String originLocationId, String destinationLocationId) {
-            Map<String, Relation> originRelations = relations.get(originLocationId);
-            return originRelations != null && originRelations.containsKey(destinationLocationId);
+            Integer origin = locationIndex.get(originLocationId);
+            Integer destination = locationIndex.get(destinationLocationId);
+            return origin != null && destination != null && !origin.equals(destination) &&
+                    durations[origin * capacity + destination] != MISSING;
         }
 
+        /**
+         * Builds the matrix on the arrays of the builder, which are copied only if the builder reserved more capacity
+         * than locations were added. Relations added afterwards do not change the built matrix.
+         */
         public TripMatrix build() {
             validateLocationsCount();
             validateOriginDestinationConsistency();
             // setup
-            List<String> indices = new ArrayList<>(locations);
+            List<String> indices = new ArrayList<>(locationIds);
             Collections.sort(indices);
             final int n = indices.size();
-            List<List<Integer>> durations = new ArrayList<>(n);
-            List<List<Integer>> distances = new ArrayList<>(n);
-            // fill matrix
-            for (String origIndex : indices) {
-                List<Integer> durationRow = new ArrayList<>(n);
-                List<Integer> distanceRow = new ArrayList<>(n);
-                for (String destIndex : indices) {
-                    if (origIndex.equals(destIndex)) {
-                        durationRow.add(0);
-                        distanceRow.add(0);
-                    } else {
-                        var relation = relations.get(origIndex).get(destIndex);
-                        durationRow.add(relation.duration);
-                        distanceRow.add(relation.distance);
+            int[] order = new int[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = locationIndex.get(indices.get(i));
+            }
+            if (capacity != n) {
+                resize(n);
+            }
+            // sort the matrix and the location index in place
+            permute(durations, n, order);
+            permute(distances, n, order);
+            locationIds.clear();
+            locationIds.addAll(indices);
+            for (int i = 0; i < n; i++) {
+                locationIndex.put(indices.get(i), i);
+            }
+            // check matrix
+            for (int i = 0; i < n; i++) {
+                durations[i * n + i] = 0;
+                distances[i * n + i] = 0;
+                for (int j = 0; j < n; j++) {
+                    if (durations[i * n + j] == MISSING) {
+                        throw new IllegalArgumentException(
+                                "Missing relation from " + indices.get(i) + " to " + indices.get(j) + ".");
                     }
                 }
-                durations.add(durationRow);
-                distances.add(distanceRow);
             }
-            return new TripMatrix(indices, durations, distances);
+            shared = true;
+            return new TripMatrix(indices, new Matrix(n, durations), new Matrix(n, distances));
         }
 
         private void validateLocationsCount() {
-            if (locations.size() < 2) {
+            if (locationIds.size() < 2) {
                 throw new IllegalArgumentException("At least two locations are required to build the matrix.");
             }
         }
 
         private void validateOriginDestinationConsistency() {
-            Set<String> originIds = relations.keySet();
-            Set<String> destinationsIds = new HashSet<>(relations.size());
-            for (var destinationMap : relations.values()) {
-                destinationsIds.addAll(destinationMap.keySet());
-            }
-            if (!originIds.equals(destinationsIds)) {
-                throw new IllegalArgumentException("Origins and destinations sets must contain the same values.");
+            for (int i = 0; i < locationIds.size(); i++) {
+                if (origins[i] != destinations[i]) {
+                    throw new IllegalArgumentException("Origins and destinations sets must contain the same values.");
+                }
             }
         }
-
-        record Relation(String originLocationId, String destinationLocationId, int duration, int distance) {
-        }
     }
 }
@@ -1,12 +1,13 @@
 package ch.sbb.rssched.client.dto.response;
 
+import ch.sbb.rssched.client.dto.JsonCodec;
+import ch.sbb.rssched.client.dto.WireFormat;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.Data;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @Data
 public class Response {
 
@@ -15,18 +16,19 @@ public class Response {
     private Schedule schedule;
 
     public static Response fromJson(String json) throws JsonProcessingException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new JavaTimeModule());
-        return objectMapper.readValue(json, Response.class);
+        return JsonCodec.reader(Response.class).readValue(json);
+    }
+
+    /**
+     * Parses the response from the stream while it is read, without holding the encoded response in memory. The
+     * stream is not closed.
+     */
+    public static Response read(InputStream inputStream, WireFormat format) throws IOException {
+        return format.reader(Response.class).readValue(inputStream);
     }
 
     public String toJSON() throws JsonProcessingException {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new Jdk8Module());
-        mapper.registerModule(new JavaTimeModule());
-        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
-        return mapper.writeValueAsString(this);
+        return JsonCodec.prettyWriter().writeValueAsString(this);
     }
 
 }
@@ -7,26 +7,18 @@ import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
-import org.matsim.api.core.v01.events.handler.PersonEntersVehicleEventHandler;
-import org.matsim.api.core.v01.events.handler.PersonLeavesVehicleEventHandler;
-import org.matsim.api.core.v01.events.handler.TransitDriverStartsEventHandler;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
-import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
-import org.matsim.core.api.experimental.events.handler.VehicleDepartsAtFacilityEventHandler;
 import org.matsim.core.utils.misc.Time;
 import org.matsim.pt.transitSchedule.api.Departure;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
-import org.matsim.pt.transitSchedule.api.TransitRouteStop;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.vehicles.Vehicle;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -34,18 +26,24 @@ import java.util.Set;
  * Event analysis to count access, egress and total passenger of a simulation run.
  * <p>
  * All transit vehicle that are travelling on a transit line of interest, are attached with a tracker, which processes
- * vehicle and passenger-related events in a simulation run. It maintains a list of entries that capture information
+ * vehicle and passenger-related events in a simulation run. It maintains a store of entries that capture information
  * about the passenger counts, access counts and egress counts at every departure at a transit stop facility.
+ * <p>
+ * The vehicle state is kept in arrays indexed by the MATSim {@link Id#index()} of the vehicles, which avoids hash
+ * lookups in the event loop. The access of a passenger is kept by the tracker of the vehicle it entered, so that the
+ * access state only grows with the number of passengers on board and not with the number of persons in the scenario.
  *
  * @author munterfi
  */
 @Log4j2
-public class EventAnalysis implements TransitDriverStartsEventHandler, VehicleDepartsAtFacilityEventHandler, VehicleArrivesAtFacilityEventHandler, PersonEntersVehicleEventHandler, PersonLeavesVehicleEventHandler {
+public class EventAnalysis implements PassengerEventHandler {
+    private static final int INITIAL_CAPACITY = 1024;
     @Getter
-    private final List<Entry> entries = new ArrayList<>(1000);
-    private final Map<Id<Vehicle>, TransitVehicleTracker> trackers = new HashMap<>();
-    private final Map<Id<Person>, Access> passengerAccessTimes = new HashMap<>();
-    private final Set<Id<Vehicle>> activeTransitVehicles = new HashSet<>();
+    private final PassengerEntryStore entries = new PassengerEntryStore();
+    private TransitVehicleTracker[] trackers = new TransitVehicleTracker[INITIAL_CAPACITY];
+    private boolean[] activeTransitVehicles = new boolean[INITIAL_CAPACITY];
+    private int trackerCount = 0;
+    private int activeTransitVehicleCount = 0;
     private final Scenario scenario;
     private final Set<Id<TransitLine>> transitLineIds;
     private final int seatDurationThreshold;
@@ -64,6 +62,10 @@ public class EventAnalysis implements TransitDriverStartsEventHandler, VehicleDe
         this.sampleSizeFactor = sampleSizeFactor;
     }
 
+    private static int grow(int capacity, int index) {
+        return Math.max(capacity * 2, index + 1);
+    }
+
     @Override
     public void handleEvent(TransitDriverStartsEvent event) {
         var vehicleId = event.getVehicleId();
@@ -72,110 +74,106 @@ public class EventAnalysis implements TransitDriverStartsEventHandler, VehicleDe
         if (vehicle != null && transitLineIds.contains(transitLineId)) {
             var transitLine = scenario.getTransitSchedule().getTransitLines().get(transitLineId);
             var transitRoute = transitLine.getRoutes().get(event.getTransitRouteId());
-            var tracker = this.trackers.computeIfAbsent(vehicleId, k -> new TransitVehicleTracker(vehicle));
+            var tracker = getOrCreateTracker(vehicle);
             var departure = transitRoute.getDepartures().get(event.getDepartureId());
             tracker.registerRouteDeparture(event.getDriverId(), transitLine, transitRoute, departure);
             log.debug("Registered new departure of transit vehicle '{}' at {} (totalActive: {}, trackers: {})",
                     vehicle.getId(), Time.writeTime(event.getTime(), Time.TIMEFORMAT_HHMMSS),
-                    activeTransitVehicles.size(), trackers.size());
+                    activeTransitVehicleCount, trackerCount);
         }
     }
 
     @Override
     public void handleEvent(VehicleArrivesAtFacilityEvent event) {
-        var vehicleId = event.getVehicleId();
-        if (activeTransitVehicles.contains(vehicleId)) {
+        int vehicleIndex = event.getVehicleId().index();
+        if (isActive(vehicleIndex)) {
             var transitStopFacility = scenario.getTransitSchedule().getFacilities().get(event.getFacilityId());
-            trackers.get(vehicleId).registerStopArrival(transitStopFacility);
+            trackers[vehicleIndex].registerStopArrival(transitStopFacility);
         }
     }
 
     @Override
     public void handleEvent(VehicleDepartsAtFacilityEvent event) {
-        var vehicleId = event.getVehicleId();
-        if (activeTransitVehicles.contains(vehicleId)) {
-            trackers.get(vehicleId).registerStopDeparture();
+        int vehicleIndex = event.getVehicleId().index();
+        if (isActive(vehicleIndex)) {
+            trackers[vehicleIndex].registerStopDeparture();
         }
     }
 
     @Override
     public void handleEvent(PersonEntersVehicleEvent event) {
-        var vehicleId = event.getVehicleId();
-        if (activeTransitVehicles.contains(vehicleId)) {
-            trackers.get(vehicleId).registerAccess(event.getPersonId(), event.getTime());
+        int vehicleIndex = event.getVehicleId().index();
+        if (isActive(vehicleIndex)) {
+            trackers[vehicleIndex].registerAccess(event.getPersonId(), event.getTime());
         }
     }
 
     @Override
     public void handleEvent(PersonLeavesVehicleEvent event) {
-        var vehicleId = event.getVehicleId();
-        if (activeTransitVehicles.contains(vehicleId)) {
-            trackers.get(vehicleId).registerEgress(event.getPersonId(), event.getTime());
+        int vehicleIndex = event.getVehicleId().index();
+        if (isActive(vehicleIndex)) {
+            trackers[vehicleIndex].registerEgress(event.getPersonId(), event.getTime());
         }
     }
 
-    private void notifyTransitVehicleDeactivation(Id<Vehicle> vehicleId) {
-        activeTransitVehicles.remove(vehicleId);
+    /**
+     * Completes the analysis after the last event, by applying the pending seat demand of departures which did not
+     * finish within the event stream.
+     */
+    @Override
+    public void finish() {
+        for (TransitVehicleTracker tracker : trackers) {
+            if (tracker != null) {
+                tracker.applySeats();
+            }
+        }
     }
 
-    private void notifyTransitVehicleActivation(Id<Vehicle> vehicleId) {
-        activeTransitVehicles.add(vehicleId);
+    private TransitVehicleTracker getOrCreateTracker(Vehicle vehicle) {
+        int vehicleIndex = vehicle.getId().index();
+        if (vehicleIndex >= trackers.length) {
+            int capacity = grow(trackers.length, vehicleIndex);
+            trackers = Arrays.copyOf(trackers, capacity);
+            activeTransitVehicles = Arrays.copyOf(activeTransitVehicles, capacity);
+        }
+        if (trackers[vehicleIndex] == null) {
+            trackers[vehicleIndex] = new TransitVehicleTracker(vehicle);
+            trackerCount++;
+        }
+        return trackers[vehicleIndex];
     }
 
-    private void notifyNewRecordEntry(Entry entry) {
-        entries.add(entry);
+    private boolean isActive(int vehicleIndex) {
+        return vehicleIndex < activeTransitVehicles.length && activeTransitVehicles[vehicleIndex];
     }
 
-    record Access(double time, int index) {
+    private void notifyTransitVehicleDeactivation(Id<Vehicle> vehicleId) {
+        if (activeTransitVehicles[vehicleId.index()]) {
+            activeTransitVehicles[vehicleId.index()] = false;
+            activeTransitVehicleCount--;
+        }
     }
 
-    /**
-     * An entry in the passenger event analysis.
-     * <p>
-     * This class captures information from a vehicle tracker when it arrives at a stop.
-     */
-    @Getter
-    public static final class Entry {
-        private final TransitLine transitLine;
-        private final TransitRoute transitRoute;
-        private final Departure departure;
-        private final TransitRouteStop fromStop;
-        private final TransitRouteStop toStop;
-        private final int egress;
-        private final int access;
-        private final int count;
-        private int seats;
-
-        /**
-         * @param transitLine  The transit line associated with the tracker.
-         * @param transitRoute The transit route currently taken by the vehicle.
-         * @param departure    The departure time from the previous stop.
-         * @param fromStop     The current transit route stop.
-         * @param toStop       The next transit route stop.
-         * @param egress       The number of egresses at the current stop.
-         * @param access       The number of accesses at the current stop.
-         * @param count        The count of passengers between the current and the next stop.
-         */
-        public Entry(TransitLine transitLine, TransitRoute transitRoute, Departure departure, TransitRouteStop fromStop, TransitRouteStop toStop, int egress, int access, int count) {
-            this.transitLine = transitLine;
-            this.transitRoute = transitRoute;
-            this.departure = departure;
-            this.fromStop = fromStop;
-            this.toStop = toStop;
-            this.egress = egress;
-            this.access = access;
-            this.count = count;
-            this.seats = 0;
+    private void notifyTransitVehicleActivation(Id<Vehicle> vehicleId) {
+        if (!activeTransitVehicles[vehicleId.index()]) {
+            activeTransitVehicles[vehicleId.index()] = true;
+            activeTransitVehicleCount++;
         }
-
     }
 
     /**
      * Track transit vehicle through the event stream.
+     * <p>
+     * The seat demand of a departure is accumulated in a difference array over the entries: A seated passenger
+     * increments the entry of its access and decrements the entry after its egress. The prefix sum is applied to the
+     * entries once the departure finishes, which keeps the cost linear in the number of events.
      */
     class TransitVehicleTracker {
         private final Vehicle vehicle;
-        private final List<Entry> entries = new ArrayList<>();
+        private int[] entryIndices = new int[16];
+        private int entryCount = 0;
+        private int[] seatDeltas = new int[16];
+        private final Map<Id<Person>, Access> accesses = new HashMap<>();
         private Id<Person> currentDriverId;
         private TransitLine currentLine;
         private TransitRoute currentRoute;
@@ -195,6 +193,8 @@ public class EventAnalysis implements TransitDriverStartsEventHandler, VehicleDe
 
         void registerRouteDeparture(Id<Person> driverId, TransitLine transitLine, TransitRoute transitRoute, Departure departure) {
             assert passenger == 0 : "Passenger count is not 0, new departure not possible";
+            applySeats();
+            entryCount = 0;
             currentDriverId = driverId;
             currentLine = transitLine;
             currentRoute = transitRoute;
@@ -221,36 +221,60 @@ public class EventAnalysis implements TransitDriverStartsEventHandler, VehicleDe
             int currentEgress = (int) Math.round(egress * sampleSizeFactor);
             int currentAccess = (int) Math.round(access * sampleSizeFactor);
             int currentCount = (int) Math.round(passenger * sampleSizeFactor);
-            var entry = new Entry(currentLine, currentRoute, currentDeparture, currentStop, nextStop, currentEgress,
-                    currentAccess, currentCount);
-            entries.add(entry);
-            notifyNewRecordEntry(entry);
+            if (entryCount == entryIndices.length) {
+                entryIndices = Arrays.copyOf(entryIndices, entryCount * 2);
+            }
+            entryIndices[entryCount++] = entries.add(currentLine, currentRoute, currentDeparture, currentStop, nextStop,
+                    currentEgress, currentAccess, currentCount);
         }
 
         void registerAccess(Id<Person> personId, double time) {
             if (!currentDriverId.equals(personId)) {
                 access++;
                 passenger++;
-                passengerAccessTimes.put(personId, new Access(time, entries.size()));
+                accesses.put(personId, new Access(time, entryCount));
             }
         }
 
         void registerEgress(Id<Person> personId, double time) {
             if (currentDriverId.equals(personId)) {
                 assert atTerminalStop : "Cannot complete route without being at terminal stop.";
+                applySeats();
                 notifyTransitVehicleDeactivation(vehicle.getId());
             } else {
                 egress++;
                 passenger--;
-                Access access = passengerAccessTimes.remove(personId);
-                if (time - access.time > seatDurationThreshold) {
-                    for (int i = access.index; i < entries.size(); i++) {
-                        entries.get(i).seats += (int) (1 * sampleSizeFactor);
+                Access personAccess = accesses.remove(personId);
+                if (personAccess == null) {
+                    throw new IllegalStateException("No access registered for passenger " + personId);
+                }
+                if (time - personAccess.time() > seatDurationThreshold) {
+                    if (seatDeltas.length <= entryCount) {
+                        seatDeltas = Arrays.copyOf(seatDeltas, Math.max(seatDeltas.length * 2, entryCount + 1));
                     }
+                    seatDeltas[personAccess.entryIndex()]++;
+                    seatDeltas[entryCount]--;
                 }
+            }
+        }
 
+        /**
+         * Applies the accumulated seat demand to the entries of the current departure and resets the difference array.
+         */
+        void applySeats() {
+            int seatsPerPassenger = (int) (1 * sampleSizeFactor);
+            int seated = 0;
+            for (int i = 0; i < entryCount; i++) {
+                seated += seatDeltas[i];
+                entries.addSeats(entryIndices[i], seated * seatsPerPassenger);
             }
+            Arrays.fill(seatDeltas, 0, Math.min(seatDeltas.length, entryCount + 1), 0);
         }
     }
-}
 
+    /**
+     * Access of a passenger on board, with the index of the entry at the stop of the access.
+     */
+    private record Access(double time, int entryIndex) {
+    }
+}
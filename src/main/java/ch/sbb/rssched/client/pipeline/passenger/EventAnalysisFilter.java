@@ -2,10 +2,10 @@ package ch.sbb.rssched.client.pipeline.passenger;
 
 import ch.sbb.rssched.client.pipeline.core.Filter;
 import lombok.extern.log4j.Log4j2;
-import org.matsim.core.api.experimental.events.EventsManager;
-import org.matsim.core.events.EventsUtils;
-import org.matsim.core.events.MatsimEventsReader;
-import org.matsim.core.events.handler.EventHandler;
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+
+import java.util.Set;
 
 /**
  * Applies the EventAnalysis on the PassengerPipe data container.
@@ -17,27 +17,42 @@ class EventAnalysisFilter implements Filter<PassengerPipe> {
 
     private final double sampleSizeFactor;
     private final int seatDurationThreshold;
+    private final int threads;
 
-    public EventAnalysisFilter(double sampleSize, int seatDurationThreshold) {
+    public EventAnalysisFilter(double sampleSize, int seatDurationThreshold, int threads) {
         this.sampleSizeFactor = 1 / sampleSize;
         this.seatDurationThreshold = seatDurationThreshold;
+        this.threads = threads;
     }
 
-    private static void runEventAnalysis(String eventFile, EventHandler eventAnalysis) {
-        EventsManager events = EventsUtils.createEventsManager();
-        events.addHandler(eventAnalysis);
-        events.initProcessing();
-        new MatsimEventsReader(events).readFile(eventFile);
-        events.finishProcessing();
+    private void runEventAnalysis(String eventFile, Set<Id<TransitLine>> transitLineIds,
+                                  PassengerEventHandler eventAnalysis) {
+        // stream the events file and only create the events relevant for the analysis
+        TransitEventsReader reader = new TransitEventsReader(transitLineIds, eventAnalysis);
+        if (threads > 1) {
+            // decompression and parsing run on separate threads
+            reader.readFilePipelined(eventFile);
+        } else {
+            reader.readFile(eventFile);
+        }
     }
 
     @Override
     public void apply(PassengerPipe pipe) {
         log.info("Starting event analysis for simulation run {} with sample size factor x{}", pipe.runId(),
                 sampleSizeFactor);
-        var passengerEventAnalysis = new EventAnalysis(pipe.scenario(), pipe.transitLineIds(), sampleSizeFactor,
-                seatDurationThreshold);
-        runEventAnalysis(pipe.eventsFile(), passengerEventAnalysis);
-        pipe.entries().addAll(passengerEventAnalysis.getEntries());
+        try (PassengerEventHandler passengerEventAnalysis = createEventAnalysis(pipe)) {
+            runEventAnalysis(pipe.eventsFile(), pipe.transitLineIds(), passengerEventAnalysis);
+            passengerEventAnalysis.finish();
+            pipe.entries().addAll(passengerEventAnalysis.getEntries());
+        }
+    }
+
+    private PassengerEventHandler createEventAnalysis(PassengerPipe pipe) {
+        if (threads > 1) {
+            return new ShardedEventAnalysis(pipe.scenario(), pipe.transitLineIds(), sampleSizeFactor,
+                    seatDurationThreshold, threads);
+        }
+        return new EventAnalysis(pipe.scenario(), pipe.transitLineIds(), sampleSizeFactor, seatDurationThreshold);
     }
 }
@@ -2,18 +2,22 @@ package ch.sbb.rssched.client.pipeline.passenger;
 
 import ch.sbb.rssched.client.pipeline.core.DataSource;
 import ch.sbb.rssched.client.pipeline.utils.io.ScenarioLoader;
+import ch.sbb.rssched.client.pipeline.utils.io.SharedScenario;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 
 /**
  * Loads a scenario with events file for further processing in a pipeline.
+ * <p>
+ * If a shared scenario is set, it is used directly instead of parsing the transit schedule and vehicles again. The
+ * passenger pipeline does not modify the scenario.
  *
  * @author munterfi
  */
 class EventSource implements DataSource<PassengerPipe> {
     private final String runId;
     private final String inputFolder;
+    private final SharedScenario sharedScenario;
 
     /**
      * Constructs a ScenarioLoader object with the specified run ID and input folder.
@@ -24,12 +28,28 @@ class EventSource implements DataSource<PassengerPipe> {
     public EventSource(String runId, String inputFolder) {
         this.runId = runId;
         this.inputFolder = inputFolder;
+        this.sharedScenario = null;
+    }
+
+    /**
+     * Constructs an EventSource reading from the shared scenario.
+     *
+     * @param sharedScenario the scenario shared with other pipelines
+     */
+    public EventSource(SharedScenario sharedScenario) {
+        this.runId = sharedScenario.getRunId();
+        this.inputFolder = null;
+        this.sharedScenario = sharedScenario;
     }
 
     @Override
     public PassengerPipe fetch() {
+        if (sharedScenario != null) {
+            return new PassengerPipe(runId, sharedScenario.getEventsFile(), sharedScenario.get(), new HashSet<>(),
+                    new PassengerEntryStore());
+        }
         var scenarioLoader = new ScenarioLoader(runId, inputFolder);
         return new PassengerPipe(runId, scenarioLoader.getEventsFile(), scenarioLoader.load(false), new HashSet<>(),
-                new ArrayList<>());
+                new PassengerEntryStore());
     }
 }
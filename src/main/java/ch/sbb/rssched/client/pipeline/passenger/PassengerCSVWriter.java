@@ -10,7 +10,6 @@ import org.matsim.core.utils.misc.Time;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
-import java.util.List;
 
 /**
  * Exports passenger data to a CSV file in the specified output directory.
@@ -20,7 +19,7 @@ import java.util.List;
  * count.
  *
  * @author munterfi
- * @see EventAnalysis.Entry
+ * @see PassengerEntryStore
  */
 @Log4j2
 class PassengerCSVWriter implements ResultSink<PassengerPipe> {
@@ -41,42 +40,44 @@ class PassengerCSVWriter implements ResultSink<PassengerPipe> {
         this.capacityFactor = capacityFactor;
     }
 
-    public static void writeCsv(List<EventAnalysis.Entry> entries, String filename, double capacityFactor) throws UncheckedIOException {
+    public static void writeCsv(PassengerEntryStore entries, String filename, double capacityFactor) throws UncheckedIOException {
         try (CSVPrinter csv = new CSVPrinter(IOUtils.getBufferedWriter(filename),
                 CSVFormat.DEFAULT.builder().setHeader(HEADER).build())) {
-            for (var entry : entries) {
-                double routeDepartureTime = entry.getDeparture().getDepartureTime();
+            for (int entry = 0; entry < entries.size(); entry++) {
+                var fromStop = entries.getFromStop(entry);
+                var toStop = entries.getToStop(entry);
+                double routeDepartureTime = entries.getDeparture(entry).getDepartureTime();
                 String arrivalTime = "";
                 String departureTime = "";
                 String toStopId = "";
                 String toStopName = "";
                 // check if not at terminal station
-                if (entry.getToStop() != null) {
-                    double departureOffset = entry.getFromStop().getDepartureOffset().seconds();
+                if (toStop != null) {
+                    double departureOffset = fromStop.getDepartureOffset().seconds();
                     departureTime = Time.writeTime(routeDepartureTime + departureOffset, Time.TIMEFORMAT_HHMMSS);
-                    toStopId = entry.getToStop().getStopFacility().getId().toString();
-                    toStopName = entry.getToStop().getStopFacility().getName();
+                    toStopId = toStop.getStopFacility().getId().toString();
+                    toStopName = toStop.getStopFacility().getName();
                 }
                 // check if not at origin / first stop of route
-                if (entry.getFromStop().getArrivalOffset().isDefined()) {
-                    double arrivalOffset = entry.getFromStop().getArrivalOffset().seconds();
+                if (fromStop.getArrivalOffset().isDefined()) {
+                    double arrivalOffset = fromStop.getArrivalOffset().seconds();
                     arrivalTime = Time.writeTime(routeDepartureTime + arrivalOffset, Time.TIMEFORMAT_HHMMSS);
                 }
-                csv.print(entry.getTransitLine().getId().toString());
-                csv.print(entry.getTransitRoute().getId().toString());
-                csv.print(entry.getDeparture().getId().toString());
-                csv.print(entry.getFromStop().getStopFacility().getId().toString());
-                csv.print(entry.getFromStop().getStopFacility().getName());
+                csv.print(entries.getTransitLine(entry).getId().toString());
+                csv.print(entries.getTransitRoute(entry).getId().toString());
+                csv.print(entries.getDeparture(entry).getId().toString());
+                csv.print(fromStop.getStopFacility().getId().toString());
+                csv.print(fromStop.getStopFacility().getName());
                 csv.print(arrivalTime);
                 csv.print(departureTime);
-                csv.print(entry.getEgress());
-                csv.print(entry.getAccess());
+                csv.print(entries.getEgress(entry));
+                csv.print(entries.getAccess(entry));
                 csv.print(toStopId);
                 csv.print(toStopName);
-                csv.print(entry.getCount());
-                csv.print(entry.getSeats());
-                csv.print(Math.round(entry.getCount() * capacityFactor));
-                csv.print(Math.round(entry.getSeats() * capacityFactor));
+                csv.print(entries.getCount(entry));
+                csv.print(entries.getSeats(entry));
+                csv.print(Math.round(entries.getCount(entry) * capacityFactor));
+                csv.print(Math.round(entries.getSeats(entry) * capacityFactor));
                 csv.println();
             }
         } catch (IOException e) {
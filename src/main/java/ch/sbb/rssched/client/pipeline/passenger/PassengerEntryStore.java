@@ -0,0 +1,245 @@
+package ch.sbb.rssched.client.pipeline.passenger;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar store of the passenger event analysis results.
+ * <p>
+ * An entry captures the passenger counts of a departure at a transit route stop. Instead of an object per entry, the
+ * counts are stored in primitive int columns and the transit lines, routes, departures and stops in dictionaries,
+ * which are referenced by int indices. The departure index implies the route and line of an entry.
+ *
+ * @author munterfi
+ */
+public final class PassengerEntryStore {
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int[] NO_ENTRIES = new int[0];
+
+    // dictionaries
+    private final Dictionary<TransitLine> lines = new Dictionary<>();
+    private final Dictionary<TransitRoute> routes = new Dictionary<>();
+    private final Dictionary<Departure> departures = new Dictionary<>();
+    private final Dictionary<TransitRouteStop> stops = new Dictionary<>();
+    private int[] routeLines = new int[INITIAL_CAPACITY];
+    private int[] departureRoutes = new int[INITIAL_CAPACITY];
+
+    // columns
+    private int size = 0;
+    private int[] departureColumn = new int[INITIAL_CAPACITY];
+    private int[] fromStopColumn = new int[INITIAL_CAPACITY];
+    private int[] toStopColumn = new int[INITIAL_CAPACITY];
+    private int[] egressColumn = new int[INITIAL_CAPACITY];
+    private int[] accessColumn = new int[INITIAL_CAPACITY];
+    private int[] countColumn = new int[INITIAL_CAPACITY];
+    private int[] seatsColumn = new int[INITIAL_CAPACITY];
+
+    // departure index, built on first lookup
+    private Map<Id<TransitLine>, Map<Id<TransitRoute>, Map<Id<Departure>, Integer>>> departureLookup;
+    private int[] departureOffsets;
+    private int[] departureEntries;
+
+    /**
+     * Adds an entry to the store.
+     *
+     * @param transitLine  The transit line associated with the tracker.
+     * @param transitRoute The transit route currently taken by the vehicle.
+     * @param departure    The departure of the vehicle on the route.
+     * @param fromStop     The current transit route stop.
+     * @param toStop       The next transit route stop, null at the terminal stop.
+     * @param egress       The number of egresses at the current stop.
+     * @param access       The number of accesses at the current stop.
+     * @param count        The count of passengers between the current and the next stop.
+     * @return the index of the new entry.
+     */
+    public int add(TransitLine transitLine, TransitRoute transitRoute, Departure departure, TransitRouteStop fromStop,
+                   TransitRouteStop toStop, int egress, int access, int count) {
+        if (size == departureColumn.length) {
+            growColumns();
+        }
+        departureColumn[size] = indexOf(transitLine, transitRoute, departure);
+        fromStopColumn[size] = stops.indexOf(fromStop);
+        toStopColumn[size] = toStop == null ? NONE : stops.indexOf(toStop);
+        egressColumn[size] = egress;
+        accessColumn[size] = access;
+        countColumn[size] = count;
+        seatsColumn[size] = 0;
+        departureLookup = null;
+        return size++;
+    }
+
+    /**
+     * Appends all entries of another store, remapping its dictionary indices.
+     *
+     * @param other the store to append.
+     */
+    void addAll(PassengerEntryStore other) {
+        for (int i = 0; i < other.size; i++) {
+            int entry = add(other.getTransitLine(i), other.getTransitRoute(i), other.getDeparture(i),
+                    other.getFromStop(i), other.getToStop(i), other.egressColumn[i], other.accessColumn[i],
+                    other.countColumn[i]);
+            seatsColumn[entry] = other.seatsColumn[i];
+        }
+    }
+
+    void addSeats(int entry, int seats) {
+        seatsColumn[entry] += seats;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TransitLine getTransitLine(int entry) {
+        return lines.get(routeLines[departureRoutes[departureColumn[entry]]]);
+    }
+
+    public TransitRoute getTransitRoute(int entry) {
+        return routes.get(departureRoutes[departureColumn[entry]]);
+    }
+
+    public Departure getDeparture(int entry) {
+        return departures.get(departureColumn[entry]);
+    }
+
+    public TransitRouteStop getFromStop(int entry) {
+        return stops.get(fromStopColumn[entry]);
+    }
+
+    /**
+     * @return the next transit route stop, or null if the entry is at the terminal stop.
+     */
+    public TransitRouteStop getToStop(int entry) {
+        return toStopColumn[entry] == NONE ? null : stops.get(toStopColumn[entry]);
+    }
+
+    public int getEgress(int entry) {
+        return egressColumn[entry];
+    }
+
+    public int getAccess(int entry) {
+        return accessColumn[entry];
+    }
+
+    public int getCount(int entry) {
+        return countColumn[entry];
+    }
+
+    public int getSeats(int entry) {
+        return seatsColumn[entry];
+    }
+
+    /**
+     * Looks up the entries of a departure, in the order they were added to the store.
+     *
+     * @param transitLineId  the id of the transit line.
+     * @param transitRouteId the id of the transit route.
+     * @param departureId    the id of the departure.
+     * @return the indices of the entries, empty if the departure has no entries.
+     */
+    public int[] getEntries(Id<TransitLine> transitLineId, Id<TransitRoute> transitRouteId, Id<Departure> departureId) {
+        if (departureLookup == null) {
+            buildDepartureIndex();
+        }
+        Integer departure = departureLookup.getOrDefault(transitLineId, Map.of())
+                .getOrDefault(transitRouteId, Map.of())
+                .get(departureId);
+        if (departure == null) {
+            return NO_ENTRIES;
+        }
+        return Arrays.copyOfRange(departureEntries, departureOffsets[departure], departureOffsets[departure + 1]);
+    }
+
+    private void buildDepartureIndex() {
+        // counting sort of the entries by departure, stable to keep the stop order within a departure
+        int departureCount = departures.size();
+        departureOffsets = new int[departureCount + 1];
+        for (int i = 0; i < size; i++) {
+            departureOffsets[departureColumn[i] + 1]++;
+        }
+        for (int d = 0; d < departureCount; d++) {
+            departureOffsets[d + 1] += departureOffsets[d];
+        }
+        int[] position = Arrays.copyOf(departureOffsets, departureCount);
+        departureEntries = new int[size];
+        for (int i = 0; i < size; i++) {
+            departureEntries[position[departureColumn[i]]++] = i;
+        }
+        departureLookup = new HashMap<>();
+        for (int d = 0; d < departureCount; d++) {
+            TransitRoute route = routes.get(departureRoutes[d]);
+            TransitLine line = lines.get(routeLines[departureRoutes[d]]);
+            departureLookup.computeIfAbsent(line.getId(), k -> new HashMap<>())
+                    .computeIfAbsent(route.getId(), k -> new HashMap<>())
+                    .put(departures.get(d).getId(), d);
+        }
+    }
+
+    private int indexOf(TransitLine transitLine, TransitRoute transitRoute, Departure departure) {
+        int departureCount = departures.size();
+        int departureIndex = departures.indexOf(departure);
+        if (departureIndex == departureCount) {
+            int routeCount = routes.size();
+            int routeIndex = routes.indexOf(transitRoute);
+            if (routeIndex == routeCount) {
+                routeLines = ensureCapacity(routeLines, routeIndex);
+                routeLines[routeIndex] = lines.indexOf(transitLine);
+            }
+            departureRoutes = ensureCapacity(departureRoutes, departureIndex);
+            departureRoutes[departureIndex] = routeIndex;
+        }
+        return departureIndex;
+    }
+
+    private static int[] ensureCapacity(int[] array, int index) {
+        return index < array.length ? array : Arrays.copyOf(array, Math.max(array.length * 2, index + 1));
+    }
+
+    private void growColumns() {
+        int capacity = departureColumn.length * 2;
+        departureColumn = Arrays.copyOf(departureColumn, capacity);
+        fromStopColumn = Arrays.copyOf(fromStopColumn, capacity);
+        toStopColumn = Arrays.copyOf(toStopColumn, capacity);
+        egressColumn = Arrays.copyOf(egressColumn, capacity);
+        accessColumn = Arrays.copyOf(accessColumn, capacity);
+        countColumn = Arrays.copyOf(countColumn, capacity);
+        seatsColumn = Arrays.copyOf(seatsColumn, capacity);
+    }
+
+    /**
+     * Dictionary assigning consecutive indices to the transit schedule objects, by object identity.
+     */
+    private static final class Dictionary<T> {
+        private final Map<T, Integer> indices = new IdentityHashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        int indexOf(T value) {
+            Integer index = indices.get(value);
+            if (index == null) {
+                index = values.size();
+                indices.put(value, index);
+                values.add(value);
+            }
+            return index;
+        }
+
+        T get(int index) {
+            return values.get(index);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+}
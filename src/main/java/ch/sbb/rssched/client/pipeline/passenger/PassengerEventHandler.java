@@ -0,0 +1,60 @@
+package ch.sbb.rssched.client.pipeline.passenger;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.api.core.v01.events.handler.PersonEntersVehicleEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonLeavesVehicleEventHandler;
+import org.matsim.api.core.v01.events.handler.TransitDriverStartsEventHandler;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
+import org.matsim.core.api.experimental.events.handler.VehicleDepartsAtFacilityEventHandler;
+
+/**
+ * Handler of the transit vehicle and passenger events, which produces the entries of the passenger analysis.
+ *
+ * @author munterfi
+ * @see EventAnalysis
+ * @see ShardedEventAnalysis
+ */
+interface PassengerEventHandler extends TransitDriverStartsEventHandler, VehicleDepartsAtFacilityEventHandler, VehicleArrivesAtFacilityEventHandler, PersonEntersVehicleEventHandler, PersonLeavesVehicleEventHandler, AutoCloseable {
+
+    /**
+     * Dispatches an event to the matching handler method, other event types are ignored.
+     *
+     * @param handler the handler to dispatch the event to.
+     * @param event   the event.
+     */
+    static void dispatch(PassengerEventHandler handler, Event event) {
+        if (event instanceof TransitDriverStartsEvent transitDriverStartsEvent) {
+            handler.handleEvent(transitDriverStartsEvent);
+        } else if (event instanceof VehicleArrivesAtFacilityEvent vehicleArrivesAtFacilityEvent) {
+            handler.handleEvent(vehicleArrivesAtFacilityEvent);
+        } else if (event instanceof VehicleDepartsAtFacilityEvent vehicleDepartsAtFacilityEvent) {
+            handler.handleEvent(vehicleDepartsAtFacilityEvent);
+        } else if (event instanceof PersonEntersVehicleEvent personEntersVehicleEvent) {
+            handler.handleEvent(personEntersVehicleEvent);
+        } else if (event instanceof PersonLeavesVehicleEvent personLeavesVehicleEvent) {
+            handler.handleEvent(personLeavesVehicleEvent);
+        }
+    }
+
+    /**
+     * Completes the analysis after the last event.
+     */
+    void finish();
+
+    /**
+     * @return the entries of the analysis, complete after {@link #finish()} is called.
+     */
+    PassengerEntryStore getEntries();
+
+    /**
+     * Releases resources held by the analysis, also if the analysis did not finish.
+     */
+    @Override
+    default void close() {
+    }
+}
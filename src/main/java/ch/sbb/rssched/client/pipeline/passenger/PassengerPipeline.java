@@ -2,6 +2,7 @@ package ch.sbb.rssched.client.pipeline.passenger;
 
 import ch.sbb.rssched.client.config.selection.FilterStrategy;
 import ch.sbb.rssched.client.pipeline.core.Pipeline;
+import ch.sbb.rssched.client.pipeline.utils.io.SharedScenario;
 
 /**
  * Extract passenger related information from a scenario.
@@ -24,9 +25,32 @@ public class PassengerPipeline extends Pipeline<PassengerPipe> {
     public PassengerPipeline(String instanceId, String runId, String inputDirectory, String outputDirectory, FilterStrategy filterStrategy, double sampleSize, double capacityFactor, int seatDurationThreshold) {
         // set source
         super(new EventSource(runId, inputDirectory));
+        configure(instanceId, outputDirectory, filterStrategy, sampleSize, capacityFactor, seatDurationThreshold, 1);
+    }
+
+    /**
+     * Constructs a PassengerPipeline reading the transit schedule and vehicles from a scenario shared with other
+     * pipelines.
+     *
+     * @param instanceId      the ID of the RSSched instance (=request) to solve
+     * @param sharedScenario  the transit schedule and vehicles shared with other pipelines
+     * @param outputDirectory the output directory to export the processed scenario files
+     * @param filterStrategy  the filter strategy for filtering transit lines
+     * @param capacityFactor  the factor to adjust the passenger capacity of units to reflect deviations in passenger
+     *                        demand
+     * @param threads         the number of threads for the event analysis, sharded by transit vehicle
+     */
+    public PassengerPipeline(String instanceId, SharedScenario sharedScenario, String outputDirectory, FilterStrategy filterStrategy, double sampleSize, double capacityFactor, int seatDurationThreshold, int threads) {
+        // set source
+        super(new EventSource(sharedScenario));
+        configure(instanceId, outputDirectory, filterStrategy, sampleSize, capacityFactor, seatDurationThreshold,
+                threads);
+    }
+
+    private void configure(String instanceId, String outputDirectory, FilterStrategy filterStrategy, double sampleSize, double capacityFactor, int seatDurationThreshold, int threads) {
         // add filters
         addFilter(new TransitLineFilter(filterStrategy));
-        addFilter(new EventAnalysisFilter(sampleSize, seatDurationThreshold));
+        addFilter(new EventAnalysisFilter(sampleSize, seatDurationThreshold, threads));
         // add sink
         addSink(new PassengerCSVWriter(outputDirectory, instanceId, capacityFactor));
     }
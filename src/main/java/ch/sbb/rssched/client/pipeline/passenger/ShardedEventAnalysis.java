@@ -0,0 +1,190 @@
+package ch.sbb.rssched.client.pipeline.passenger;
+
+import lombok.extern.log4j.Log4j2;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event analysis running on multiple threads, sharded by transit vehicle.
+ * <p>
+ * All state of the event analysis is per vehicle, including the access times of the passengers on board, which are
+ * kept by the vehicle the passenger entered. Therefore, the events are partitioned by vehicle onto independent
+ * {@link EventAnalysis} shards, each consuming its own bounded queue on its own thread. Since all events of a vehicle
+ * go through the same queue, their order is preserved.
+ * <p>
+ * The entries of the shards are merged in shard order after the last event. Within a departure, the entries keep the
+ * order of the stops, but the departures are grouped by shard instead of ordered by event time as in the sequential
+ * analysis. Apart from this order, the entries are identical to the ones of the sequential analysis.
+ * <p>
+ * Since the access state is kept per vehicle, it takes memory proportional to the number of passengers on board,
+ * independent of the number of shards.
+ *
+ * @author munterfi
+ */
+@Log4j2
+class ShardedEventAnalysis implements PassengerEventHandler {
+    private static final int BATCH_SIZE = 1024;
+    private static final int QUEUE_CAPACITY = 16;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+    private static final List<Event> END_OF_EVENTS = List.of();
+    private final EventAnalysis[] shards;
+    private final List<BlockingQueue<List<Event>>> queues;
+    private final List<List<Event>> batches;
+    private final List<Future<?>> workers;
+    private final ExecutorService executor;
+    private final PassengerEntryStore entries = new PassengerEntryStore();
+
+    /**
+     * @param scenario              the scenario representing the simulation run.
+     * @param transitLineIds        the set of transit line IDs to consider for passenger analysis.
+     * @param sampleSizeFactor      the factor to scale the sample to the full demand.
+     * @param seatDurationThreshold the travel time threshold for a seated passenger.
+     * @param threads               the number of shards, each running on its own thread.
+     */
+    ShardedEventAnalysis(Scenario scenario, Set<Id<TransitLine>> transitLineIds, double sampleSizeFactor, int seatDurationThreshold, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is required for the event analysis.");
+        }
+        shards = new EventAnalysis[threads];
+        queues = new ArrayList<>(threads);
+        batches = new ArrayList<>(threads);
+        workers = new ArrayList<>(threads);
+        executor = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++) {
+            EventAnalysis shard = new EventAnalysis(scenario, transitLineIds, sampleSizeFactor, seatDurationThreshold);
+            BlockingQueue<List<Event>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            shards[i] = shard;
+            queues.add(queue);
+            batches.add(new ArrayList<>(BATCH_SIZE));
+            workers.add(executor.submit(() -> consume(shard, queue)));
+        }
+        log.info("Running event analysis on {} shards", threads);
+    }
+
+    private static void consume(EventAnalysis shard, BlockingQueue<List<Event>> queue) {
+        try {
+            List<Event> batch;
+            while ((batch = queue.take()) != END_OF_EVENTS) {
+                for (Event event : batch) {
+                    PassengerEventHandler.dispatch(shard, event);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while analysing events", e);
+        }
+    }
+
+    private static void await(Future<?> worker) {
+        try {
+            worker.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while analysing events", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to analyse events: " + e.getCause().getMessage(), e);
+        }
+    }
+
+    @Override
+    public void handleEvent(TransitDriverStartsEvent event) {
+        route(event.getVehicleId(), event);
+    }
+
+    @Override
+    public void handleEvent(VehicleArrivesAtFacilityEvent event) {
+        route(event.getVehicleId(), event);
+    }
+
+    @Override
+    public void handleEvent(VehicleDepartsAtFacilityEvent event) {
+        route(event.getVehicleId(), event);
+    }
+
+    @Override
+    public void handleEvent(PersonEntersVehicleEvent event) {
+        route(event.getVehicleId(), event);
+    }
+
+    @Override
+    public void handleEvent(PersonLeavesVehicleEvent event) {
+        route(event.getVehicleId(), event);
+    }
+
+    private void route(Id<Vehicle> vehicleId, Event event) {
+        int shard = Math.floorMod(vehicleId.index(), shards.length);
+        List<Event> batch = batches.get(shard);
+        batch.add(event);
+        if (batch.size() == BATCH_SIZE) {
+            submit(shard, new ArrayList<>(batch));
+            batch.clear();
+        }
+    }
+
+    private void submit(int shard, List<Event> batch) {
+        try {
+            // a failed worker no longer consumes its queue, therefore check it while waiting for capacity
+            while (!queues.get(shard).offer(batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (workers.get(shard).isDone()) {
+                    await(workers.get(shard));
+                    throw new IllegalStateException("Event analysis shard " + shard + " stopped unexpectedly.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while analysing events", e);
+        }
+    }
+
+    /**
+     * Waits for all shards to process their events and merges the entries of the shards in shard order.
+     */
+    @Override
+    public void finish() {
+        for (int i = 0; i < shards.length; i++) {
+            if (!batches.get(i).isEmpty()) {
+                submit(i, new ArrayList<>(batches.get(i)));
+                batches.get(i).clear();
+            }
+            submit(i, END_OF_EVENTS);
+        }
+        workers.forEach(ShardedEventAnalysis::await);
+        for (EventAnalysis shard : shards) {
+            shard.finish();
+            entries.addAll(shard.getEntries());
+        }
+        executor.shutdown();
+    }
+
+    @Override
+    public PassengerEntryStore getEntries() {
+        return entries;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,346 @@
+package ch.sbb.rssched.client.pipeline.passenger;
+
+import lombok.extern.log4j.Log4j2;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming reader for the events file, which only materializes the events needed by the event analysis.
+ * <p>
+ * The reader looks at the event type attribute first and skips all events except TransitDriverStarts,
+ * VehicleArrivesAtFacility, VehicleDepartsAtFacility, PersonEntersVehicle and PersonLeavesVehicle. Vehicle events are
+ * only created for vehicles which started a departure on one of the selected transit lines. The events are dispatched
+ * directly to the event analysis in file order, without an events manager in between.
+ * <p>
+ * In pipelined mode, the reading is split into three stages connected by bounded queues: One thread inflates the
+ * compressed file into blocks, a second thread parses the blocks into events and the calling thread dispatches the
+ * events to the analysis. Decompression, parsing and analysis overlap on separate cores, while the single producer and
+ * consumer per queue preserve the event order.
+ *
+ * @author munterfi
+ * @see EventAnalysis
+ */
+@Log4j2
+class TransitEventsReader {
+    private static final String EVENT = "event";
+    private static final String TYPE = "type";
+    private static final String TIME = "time";
+    private static final String VEHICLE = "vehicle";
+    private static final String PERSON = "person";
+    private static final String FACILITY = "facility";
+    private static final String DELAY = "delay";
+    private static final int BLOCK_SIZE = 1 << 16;
+    private static final int BLOCK_QUEUE_CAPACITY = 64;
+    private static final int EVENT_BATCH_SIZE = 1024;
+    private static final int EVENT_QUEUE_CAPACITY = 64;
+    private static final byte[] END_OF_BLOCKS = new byte[0];
+    private static final List<Event> END_OF_EVENTS = List.of();
+    private final Set<String> transitLineIds;
+    private final Set<String> transitVehicleIds = new HashSet<>();
+    private final PassengerEventHandler eventAnalysis;
+    private long totalEvents = 0;
+    private long createdEvents = 0;
+    private Consumer<Event> sink;
+
+    /**
+     * @param transitLineIds the selected transit lines, events of vehicles on other lines are skipped.
+     * @param eventAnalysis  the event analysis to dispatch the events to.
+     */
+    TransitEventsReader(Set<Id<TransitLine>> transitLineIds, PassengerEventHandler eventAnalysis) {
+        this.transitLineIds = transitLineIds.stream().map(Id::toString).collect(Collectors.toSet());
+        this.eventAnalysis = eventAnalysis;
+    }
+
+    private static double parseDouble(Attributes attributes, String name, double defaultValue) {
+        String value = attributes.getValue(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * Reads the events file on the calling thread.
+     *
+     * @param eventsFile the path of the events file.
+     */
+    void readFile(String eventsFile) {
+        sink = event -> PassengerEventHandler.dispatch(eventAnalysis, event);
+        try (InputStream inputStream = IOUtils.getInputStream(IOUtils.resolveFileOrResource(eventsFile))) {
+            parse(inputStream, eventsFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("Read {} events, created {} events for the analysis", totalEvents, createdEvents);
+    }
+
+    /**
+     * Reads the events file in a pipeline of inflating, parsing and dispatching stages.
+     *
+     * @param eventsFile the path of the events file.
+     */
+    void readFilePipelined(String eventsFile) {
+        BlockingQueue<byte[]> blocks = new ArrayBlockingQueue<>(BLOCK_QUEUE_CAPACITY);
+        BlockingQueue<List<Event>> batches = new ArrayBlockingQueue<>(EVENT_QUEUE_CAPACITY);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> inflater = executor.submit(() -> inflate(eventsFile, blocks));
+            Future<?> parser = executor.submit(() -> {
+                List<Event> batch = new ArrayList<>(EVENT_BATCH_SIZE);
+                sink = event -> {
+                    batch.add(event);
+                    if (batch.size() == EVENT_BATCH_SIZE) {
+                        putUninterruptibly(batches, new ArrayList<>(batch));
+                        batch.clear();
+                    }
+                };
+                try {
+                    parse(new BlockInputStream(blocks, inflater), eventsFile);
+                    if (!batch.isEmpty()) {
+                        putUninterruptibly(batches, new ArrayList<>(batch));
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    putUninterruptibly(batches, END_OF_EVENTS);
+                }
+            });
+            // dispatch on the calling thread in the order of the file
+            List<Event> batch;
+            while ((batch = batches.take()) != END_OF_EVENTS) {
+                for (Event event : batch) {
+                    PassengerEventHandler.dispatch(eventAnalysis, event);
+                }
+            }
+            parser.get();
+            inflater.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading events file " + eventsFile, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(
+                    "Failed to read events file " + eventsFile + ": " + e.getCause().getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Read {} events, created {} events for the analysis", totalEvents, createdEvents);
+    }
+
+    private static void inflate(String eventsFile, BlockingQueue<byte[]> blocks) {
+        try (InputStream inputStream = IOUtils.getInputStream(IOUtils.resolveFileOrResource(eventsFile))) {
+            byte[] block = new byte[BLOCK_SIZE];
+            int length;
+            while ((length = inputStream.readNBytes(block, 0, BLOCK_SIZE)) > 0) {
+                putUninterruptibly(blocks, Arrays.copyOf(block, length));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            putUninterruptibly(blocks, END_OF_BLOCKS);
+        }
+    }
+
+    private static <T> void putUninterruptibly(BlockingQueue<T> queue, T element) {
+        try {
+            queue.put(element);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading events", e);
+        }
+    }
+
+    private void parse(InputStream inputStream, String eventsFile) throws IOException {
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(false);
+            factory.setValidating(false);
+            SAXParser parser = factory.newSAXParser();
+            parser.parse(inputStream, new EventHandler());
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IllegalStateException("Failed to parse events file " + eventsFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void emit(Event event) {
+        createdEvents++;
+        sink.accept(event);
+    }
+
+    private void handle(Attributes attributes) {
+        totalEvents++;
+        String type = attributes.getValue(TYPE);
+        if (type == null) {
+            return;
+        }
+        switch (type) {
+            case TransitDriverStartsEvent.EVENT_TYPE:
+                handleTransitDriverStarts(attributes);
+                break;
+            case VehicleArrivesAtFacilityEvent.EVENT_TYPE:
+                if (transitVehicleIds.contains(attributes.getValue(VEHICLE))) {
+                    emit(new VehicleArrivesAtFacilityEvent(parseDouble(attributes, TIME, 0),
+                            Id.create(attributes.getValue(VEHICLE), Vehicle.class),
+                            Id.create(attributes.getValue(FACILITY), TransitStopFacility.class),
+                            parseDouble(attributes, DELAY, 0)));
+                }
+                break;
+            case VehicleDepartsAtFacilityEvent.EVENT_TYPE:
+                if (transitVehicleIds.contains(attributes.getValue(VEHICLE))) {
+                    emit(new VehicleDepartsAtFacilityEvent(parseDouble(attributes, TIME, 0),
+                            Id.create(attributes.getValue(VEHICLE), Vehicle.class),
+                            Id.create(attributes.getValue(FACILITY), TransitStopFacility.class),
+                            parseDouble(attributes, DELAY, 0)));
+                }
+                break;
+            case PersonEntersVehicleEvent.EVENT_TYPE:
+                if (transitVehicleIds.contains(attributes.getValue(VEHICLE))) {
+                    emit(new PersonEntersVehicleEvent(parseDouble(attributes, TIME, 0),
+                            Id.create(attributes.getValue(PERSON), Person.class),
+                            Id.create(attributes.getValue(VEHICLE), Vehicle.class)));
+                }
+                break;
+            case PersonLeavesVehicleEvent.EVENT_TYPE:
+                if (transitVehicleIds.contains(attributes.getValue(VEHICLE))) {
+                    emit(new PersonLeavesVehicleEvent(parseDouble(attributes, TIME, 0),
+                            Id.create(attributes.getValue(PERSON), Person.class),
+                            Id.create(attributes.getValue(VEHICLE), Vehicle.class)));
+                }
+                break;
+            default:
+                // skip all other event types without creating objects
+                break;
+        }
+    }
+
+    private void handleTransitDriverStarts(Attributes attributes) {
+        String transitLineId = attributes.getValue(TransitDriverStartsEvent.ATTRIBUTE_TRANSIT_LINE_ID);
+        if (!transitLineIds.contains(transitLineId)) {
+            return;
+        }
+        String vehicleId = attributes.getValue(TransitDriverStartsEvent.ATTRIBUTE_VEHICLE_ID);
+        // the vehicle stays known, the event analysis decides if a vehicle is currently active
+        transitVehicleIds.add(vehicleId);
+        emit(new TransitDriverStartsEvent(parseDouble(attributes, TIME, 0),
+                Id.create(attributes.getValue(TransitDriverStartsEvent.ATTRIBUTE_DRIVER_ID), Person.class),
+                Id.create(vehicleId, Vehicle.class), Id.create(transitLineId, TransitLine.class),
+                Id.create(attributes.getValue(TransitDriverStartsEvent.ATTRIBUTE_TRANSIT_ROUTE_ID),
+                        TransitRoute.class),
+                Id.create(attributes.getValue(TransitDriverStartsEvent.ATTRIBUTE_DEPARTURE_ID), Departure.class)));
+    }
+
+    /**
+     * Input stream reading the inflated blocks from the queue, until the end of blocks marker is received.
+     * <p>
+     * The inflater also sends the end of blocks marker if it fails, therefore the stream checks the inflater at the end
+     * and passes its failure on to the parser, instead of reporting a truncated file.
+     */
+    private static final class BlockInputStream extends InputStream {
+        private final BlockingQueue<byte[]> blocks;
+        private final Future<?> inflater;
+        private byte[] current = new byte[0];
+        private int position = 0;
+        private boolean finished = false;
+
+        BlockInputStream(BlockingQueue<byte[]> blocks, Future<?> inflater) {
+            this.blocks = blocks;
+            this.inflater = inflater;
+        }
+
+        private boolean nextBlock() throws IOException {
+            while (!finished && position == current.length) {
+                try {
+                    current = blocks.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for inflated block");
+                }
+                position = 0;
+                finished = current == END_OF_BLOCKS;
+                if (finished) {
+                    awaitInflater();
+                }
+            }
+            return !finished;
+        }
+
+        private void awaitInflater() throws IOException {
+            try {
+                inflater.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the inflater");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() instanceof UncheckedIOException uncheckedIOException ?
+                        uncheckedIOException.getCause() : e.getCause();
+                throw new IOException("Failed to inflate events file: " + cause.getMessage(), cause);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextBlock()) {
+                return -1;
+            }
+            return current[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!nextBlock()) {
+                return -1;
+            }
+            int count = Math.min(length, current.length - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+    }
+
+    private class EventHandler extends DefaultHandler {
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (EVENT.equals(qName)) {
+                handle(attributes);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import ch.sbb.rssched.client.config.RsschedRequestConfig.Global.RoutingAlgorithm;
+import ch.sbb.rssched.client.dto.request.Request;
+import ch.sbb.rssched.client.pipeline.request.TrainNetworkRouter.PathResult;
+import ch.sbb.rssched.client.pipeline.utils.io.DeadHeadTripCache;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Dead head trip matrix builder
+ * <p>
+ * Routes the dead head trips between all locations in parallel. The origins are partitioned across a pool of workers,
+ * each holding its own {@link TrainNetworkRouter} with its own search state on the shared immutable
+ * {@link RoutingGraph} and the shared preprocessed data of the routing algorithm. The results are merged into the
+ * request builder on the calling thread.
+ * <p>
+ * If a cache is set, only the relations missing in the cache are routed and the new results are stored in the cache.
+ *
+ * @author munterfi
+ */
+@Log4j2
+@RequiredArgsConstructor
+class DeadHeadTripMatrixBuilder {
+    private final RoutingGraph graph;
+    private final RoutingAlgorithm algorithm;
+    private final double freeSpeedLimit;
+    private final double beelineDistanceFactor;
+    private final int threads;
+    private final DeadHeadTripCache cache;
+
+    /**
+     * Routes all relations between the facilities and adds them as dead head trips to the request builder.
+     *
+     * @param builder    The request builder to add the dead head trips to.
+     * @param facilities The locations of the request.
+     */
+    void addDeadHeadTrips(Request.Builder builder, List<TransitStopFacility> facilities) {
+        buildMatrix(facilities).forEach((origin, destinations) -> destinations.forEach(
+                (destination, pathResult) -> builder.addDeadHeadTrip(origin.getId().toString(),
+                        destination.getId().toString(), pathResult.duration(), pathResult.distance())));
+    }
+
+    /**
+     * Routes or looks up in the cache all relations between the facilities.
+     *
+     * @param facilities The locations of the request.
+     * @return The path results by origin and destination, both in location order.
+     */
+    Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> buildMatrix(List<TransitStopFacility> facilities) {
+        Map<TransitStopFacility, List<TransitStopFacility>> relations = collectRelationsToRoute(facilities);
+        int workers = Math.max(1, Math.min(threads, relations.size()));
+        log.info("Routing dead head trips from {} of {} origins on {} thread(s)", relations.size(), facilities.size(),
+                workers);
+        Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> results;
+        if (relations.isEmpty()) {
+            results = Map.of();
+        } else {
+            log.info("Using {} routing algorithm", algorithm);
+            Supplier<TrainNetworkRouter> routers = TrainNetworkRouter.factory(graph, algorithm, freeSpeedLimit,
+                    beelineDistanceFactor);
+            if (workers == 1) {
+                results = route(routers, new ArrayList<>(relations.entrySet()));
+            } else {
+                results = routeParallel(routers, relations, workers);
+            }
+        }
+        if (cache != null && !results.isEmpty()) {
+            results.forEach((origin, destinations) -> destinations.forEach(
+                    (destination, pathResult) -> cache.put(origin, destination, pathResult)));
+            cache.save();
+        }
+        // merge in location order, independent of the worker completion order
+        Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> matrix = new LinkedHashMap<>(facilities.size());
+        for (TransitStopFacility origin : facilities) {
+            Map<TransitStopFacility, PathResult> destinations = new LinkedHashMap<>(facilities.size());
+            for (TransitStopFacility destination : facilities) {
+                if (!origin.getId().equals(destination.getId())) {
+                    destinations.put(destination, lookup(results, origin, destination));
+                }
+            }
+            matrix.put(origin, destinations);
+        }
+        return matrix;
+    }
+
+    private Map<TransitStopFacility, List<TransitStopFacility>> collectRelationsToRoute(
+            List<TransitStopFacility> facilities) {
+        Map<TransitStopFacility, List<TransitStopFacility>> relations = new LinkedHashMap<>();
+        for (TransitStopFacility origin : facilities) {
+            List<TransitStopFacility> missing = new ArrayList<>();
+            for (TransitStopFacility destination : facilities) {
+                if (origin.getId().equals(destination.getId()) || (cache != null && cache.get(origin,
+                        destination) != null)) {
+                    continue;
+                }
+                missing.add(destination);
+            }
+            if (!missing.isEmpty()) {
+                relations.put(origin, missing);
+            }
+        }
+        return relations;
+    }
+
+    private PathResult lookup(Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> results,
+                              TransitStopFacility origin, TransitStopFacility destination) {
+        Map<TransitStopFacility, PathResult> originResults = results.get(origin);
+        if (originResults != null && originResults.containsKey(destination)) {
+            return originResults.get(destination);
+        }
+        return cache.get(origin, destination);
+    }
+
+    private Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> routeParallel(
+            Supplier<TrainNetworkRouter> routers, Map<TransitStopFacility, List<TransitStopFacility>> relations,
+            int workers) {
+        // round-robin partition to balance origins with large and small search trees
+        List<List<Map.Entry<TransitStopFacility, List<TransitStopFacility>>>> partitions = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        int i = 0;
+        for (var relation : relations.entrySet()) {
+            partitions.get(i++ % workers).add(relation);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<Map<TransitStopFacility, Map<TransitStopFacility, PathResult>>>> futures = new ArrayList<>(
+                    workers);
+            for (var partition : partitions) {
+                Callable<Map<TransitStopFacility, Map<TransitStopFacility, PathResult>>> task = () -> route(routers,
+                        partition);
+                futures.add(executor.submit(task));
+            }
+            Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> results = new HashMap<>(
+                    relations.size());
+            for (var future : futures) {
+                results.putAll(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while routing dead head trips", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to route dead head trips: " + e.getCause().getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> route(
+            Supplier<TrainNetworkRouter> routers,
+            List<Map.Entry<TransitStopFacility, List<TransitStopFacility>>> relations) {
+        // each worker uses its own router, since the search state of a router is not thread-safe
+        TrainNetworkRouter router = routers.get();
+        Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> results = new HashMap<>(
+                relations.size());
+        for (var relation : relations) {
+            results.put(relation.getKey(), router.calculate(relation.getKey(), relation.getValue()));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,112 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import java.util.Arrays;
+
+/**
+ * Landmarks for the A* search with landmarks (ALT)
+ * <p>
+ * Stores the least costs from and to a small set of landmark nodes. By the triangle inequality, the differences of
+ * these costs are a lower bound of the cost between any two nodes, which is used as admissible heuristic. The landmarks
+ * are selected greedily as the nodes farthest away from the already selected landmarks. Since the landmarks are
+ * immutable, they can be shared between routers on different threads.
+ *
+ * @author munterfi
+ */
+final class Landmarks {
+    private final double[][] costsFromLandmarks;
+    private final double[][] costsToLandmarks;
+
+    private Landmarks(double[][] costsFromLandmarks, double[][] costsToLandmarks) {
+        this.costsFromLandmarks = costsFromLandmarks;
+        this.costsToLandmarks = costsToLandmarks;
+    }
+
+    /**
+     * Selects the landmarks and calculates the costs from and to them.
+     *
+     * @param graph   the routing graph.
+     * @param reverse the reverse routing graph, used for the costs to the landmarks.
+     * @param count   the number of landmarks, limited by the number of nodes.
+     * @return the landmarks.
+     */
+    static Landmarks select(RoutingGraph graph, RoutingGraph reverse, int count) {
+        int nodeCount = graph.getNodeCount();
+        int landmarkCount = Math.min(count, nodeCount);
+        double[][] costsFromLandmarks = new double[landmarkCount][];
+        double[][] costsToLandmarks = new double[landmarkCount][];
+        if (landmarkCount == 0) {
+            return new Landmarks(costsFromLandmarks, costsToLandmarks);
+        }
+        // start with the node farthest away from an arbitrary node
+        double[] minCosts = calculateCosts(graph, 0);
+        for (int i = 0; i < landmarkCount; i++) {
+            int landmark = findFarthestNode(minCosts);
+            costsFromLandmarks[i] = calculateCosts(graph, landmark);
+            costsToLandmarks[i] = calculateCosts(reverse, landmark);
+            if (i == 0) {
+                Arrays.fill(minCosts, Double.POSITIVE_INFINITY);
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                minCosts[node] = Math.min(minCosts[node], costsFromLandmarks[i][node]);
+            }
+        }
+        return new Landmarks(costsFromLandmarks, costsToLandmarks);
+    }
+
+    /**
+     * Nodes not reached from the selected landmarks are preferred, to cover all components of the graph.
+     */
+    private static int findFarthestNode(double[] costs) {
+        int farthest = 0;
+        for (int node = 1; node < costs.length; node++) {
+            if (costs[node] > costs[farthest]) {
+                farthest = node;
+            }
+        }
+        return farthest;
+    }
+
+    /**
+     * Calculates the least costs from the source node to all nodes, unreachable nodes have infinite costs.
+     */
+    private static double[] calculateCosts(RoutingGraph graph, int source) {
+        double[] costs = new double[graph.getNodeCount()];
+        boolean[] settled = new boolean[graph.getNodeCount()];
+        Arrays.fill(costs, Double.POSITIVE_INFINITY);
+        NodeHeap heap = new NodeHeap(graph.getNodeCount());
+        costs[source] = 0;
+        heap.offer(source, 0);
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            settled[node] = true;
+            for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++) {
+                int head = graph.head(edge);
+                double cost = costs[node] + graph.cost(edge);
+                if (!settled[head] && cost < costs[head]) {
+                    costs[head] = cost;
+                    heap.offer(head, cost);
+                }
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Lower bound of the least cost from the node to the target node. Landmarks that do not reach or are not reached
+     * by both nodes are skipped.
+     */
+    double lowerBound(int node, int target) {
+        double bound = 0;
+        for (int i = 0; i < costsFromLandmarks.length; i++) {
+            double fromLandmark = costsFromLandmarks[i][target] - costsFromLandmarks[i][node];
+            if (Double.isFinite(fromLandmark) && fromLandmark > bound) {
+                bound = fromLandmark;
+            }
+            double toLandmark = costsToLandmarks[i][node] - costsToLandmarks[i][target];
+            if (Double.isFinite(toLandmark) && toLandmark > bound) {
+                bound = toLandmark;
+            }
+        }
+        return bound;
+    }
+}
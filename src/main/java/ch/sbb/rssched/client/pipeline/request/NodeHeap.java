@@ -0,0 +1,105 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import java.util.Arrays;
+
+/**
+ * Indexed binary min-heap of graph nodes, supporting decrease-key on primitive arrays.
+ *
+ * @author munterfi
+ */
+final class NodeHeap {
+    private static final int ABSENT = -1;
+    private final int[] heap;
+    private final int[] positions;
+    private final double[] keys;
+    private int size = 0;
+
+    NodeHeap(int nodeCount) {
+        heap = new int[nodeCount];
+        positions = new int[nodeCount];
+        keys = new double[nodeCount];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    double peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Inserts the node, or decreases its key if it is already in the heap.
+     */
+    void offer(int node, double key) {
+        int position = positions[node];
+        if (position == ABSENT) {
+            position = size++;
+            heap[position] = node;
+            positions[node] = position;
+        } else if (key >= keys[node]) {
+            return;
+        }
+        keys[node] = key;
+        siftUp(position);
+    }
+
+    int poll() {
+        int node = heap[0];
+        positions[node] = ABSENT;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return node;
+    }
+
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int node = heap[position];
+        double key = keys[node];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (keys[heap[parent]] <= key) {
+                break;
+            }
+            move(heap[parent], position);
+            position = parent;
+        }
+        move(node, position);
+    }
+
+    private void siftDown(int position) {
+        int node = heap[position];
+        double key = keys[node];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                child++;
+            }
+            if (keys[heap[child]] >= key) {
+                break;
+            }
+            move(heap[child], position);
+            position = child;
+        }
+        move(node, position);
+    }
+
+    private void move(int node, int position) {
+        heap[position] = node;
+        positions[node] = position;
+    }
+}
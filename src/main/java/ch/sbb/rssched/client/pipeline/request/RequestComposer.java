@@ -3,6 +3,8 @@ package ch.sbb.rssched.client.pipeline.request;
 import ch.sbb.rssched.client.config.RsschedRequestConfig;
 import ch.sbb.rssched.client.dto.request.Request;
 import ch.sbb.rssched.client.pipeline.core.Filter;
+import ch.sbb.rssched.client.pipeline.passenger.PassengerEntryStore;
+import ch.sbb.rssched.client.pipeline.utils.io.DeadHeadTripCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.matsim.api.core.v01.Id;
@@ -37,10 +39,10 @@ import java.util.Set;
 @Log4j2
 @RequiredArgsConstructor
 public class RequestComposer implements Filter<RequestPipe> {
-    public static final int LOCATION_SIZE_LIMIT = 500;
     private final Map<Id<TransitStopFacility>, Boolean> locations = new HashMap<>();
     private final Set<String> departuresIds = new HashSet<>();
     private final Map<TransitStopFacility, Set<VehicleType>> depots = new HashMap<>();
+    private final Map<TransitRoute, RouteDistances> routeDistances = new HashMap<>();
 
     private final RsschedRequestConfig config;
 
@@ -115,51 +117,53 @@ public class RequestComposer implements Filter<RequestPipe> {
                 segment.destination.getArrivalOffset().seconds() - segment.origin.getDepartureOffset().seconds());
     }
 
-    private static int extractDistance(Network network, TransitRoute transitRoute, Segment segment) {
-        Id<Link> fromLink = segment.origin.getStopFacility().getLinkId();
-        Id<Link> toLink = segment.destination.getStopFacility().getLinkId();
-        double distance = 0.0;
-
-        // Transit route does not contain first and last link of the route, therefore it is checked if the segment is at
-        // the beginning of the transit route: From link is not in the link ids, therefore start counting
-        boolean countDistance = !transitRoute.getRoute().getLinkIds().contains(fromLink);
+    private static int extractDistance(RouteDistances routeDistances, Segment segment) {
+        return (int) Math.round(routeDistances.between(segment.origin.getStopFacility().getLinkId(),
+                segment.destination.getStopFacility().getLinkId()));
+    }
 
-        for (Id<Link> linkId : transitRoute.getRoute().getLinkIds()) {
-            // only count between the links
-            if (linkId.equals(toLink)) {
-                break;
+    /**
+     * Extracts the maximum total and seated passengers of all segments of a departure.
+     * <p>
+     * The segments are consecutive along the route, therefore the entries of the departure are swept once: Each segment
+     * starts at the entry departing from its origin and ends with the entry arriving at its destination, where the next
+     * segment continues. If a stop of the route is not served by the departure, a segment without its origin has no
+     * passengers and a segment without its destination counts up to the last entry, as if the segment was extracted on
+     * its own.
+     */
+    static PassengerResult[] extractPassengers(PassengerEntryStore passengers, int[] departureEntries,
+                                               List<Segment> segments) {
+        PassengerResult[] results = new PassengerResult[segments.size()];
+        int position = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            // advance to the entry departing from the segment origin
+            int start = position;
+            while (start < departureEntries.length && !isSameFacility(segment.origin,
+                    passengers.getFromStop(departureEntries[start]))) {
+                start++;
             }
-            if (countDistance) {
-                distance += network.getLinks().get(linkId).getLength();
+            int maxPassengers = 0;
+            int maxSeats = 0;
+            boolean arrived = false;
+            int end = start;
+            while (!arrived && end < departureEntries.length) {
+                int leg = departureEntries[end++];
+                maxPassengers = Math.max(maxPassengers, passengers.getCount(leg));
+                maxSeats = Math.max(maxSeats, passengers.getSeats(leg));
+                arrived = isSameFacility(segment.destination, passengers.getToStop(leg));
             }
-            if (linkId.equals(fromLink)) {
-                countDistance = true;
+            results[i] = new PassengerResult(maxPassengers, maxSeats);
+            // if the origin or the destination is missing, the next segment searches from the same position
+            if (arrived) {
+                position = end;
             }
         }
-
-        return (int) Math.round(distance);
+        return results;
     }
 
-    private static PassengerResult extractPassengers(List<PassengerCount> passengerCounts, Segment segment) {
-        int maxPassengers = 0;
-        int maxSeats = 0;
-        boolean counting = false;
-
-        for (PassengerCount leg : passengerCounts) {
-            if (segment.origin.getStopFacility().getId().equals(leg.fromStop().getStopFacility().getId())) {
-                counting = true;
-            }
-            if (counting) {
-                maxPassengers = Math.max(maxPassengers, leg.count());
-                maxSeats = Math.max(maxSeats, leg.seats());
-            }
-            if (leg.toStop() != null && segment.destination.getStopFacility()
-                    .getId()
-                    .equals(leg.toStop().getStopFacility().getId())) {
-                break;
-            }
-        }
-        return new PassengerResult(maxPassengers, maxSeats);
+    private static boolean isSameFacility(TransitRouteStop stop, TransitRouteStop other) {
+        return other != null && stop.getStopFacility().getId().equals(other.getStopFacility().getId());
     }
 
     @Override
@@ -182,7 +186,7 @@ public class RequestComposer implements Filter<RequestPipe> {
             addDepotsFromConfig(builder, scenario);
         }
         addMaintenanceSlots(builder, scenario);
-        addDeadHeadTrips(builder, scenario);
+        addDeadHeadTrips(builder, scenario, pipe.getRoutingGraph());
         setParameters(builder);
         // build request
         pipe.setRequest(builder.build());
@@ -217,6 +221,7 @@ public class RequestComposer implements Filter<RequestPipe> {
         depots.clear();
         departuresIds.clear();
         locations.clear();
+        routeDistances.clear();
     }
 
     private void addDepotsToTerminalLocation(Request.Builder builder, Scenario scenario, TransitRoute transitRoute) {
@@ -237,9 +242,15 @@ public class RequestComposer implements Filter<RequestPipe> {
         }
     }
 
-    private void addRouteWithDepartures(Request.Builder builder, Scenario scenario, TransitLine transitLine, TransitRoute transitRoute, Map<Id<Departure>, List<PassengerCount>> passengers) {
+    private void addRouteWithDepartures(Request.Builder builder, Scenario scenario, TransitLine transitLine, TransitRoute transitRoute, PassengerEntryStore passengers) {
         final String transitRouteId = transitRoute.getId().toString();
         final List<Segment> segments = collectSegments(transitRoute, config.getShunting().getOnRouteLocations());
+        // get total and seated passengers of all segments per departure
+        final Map<Id<Departure>, PassengerResult[]> departurePassengers = new HashMap<>();
+        for (Departure departure : transitRoute.getDepartures().values()) {
+            departurePassengers.put(departure.getId(), extractPassengers(passengers,
+                    passengers.getEntries(transitLine.getId(), transitRoute.getId(), departure.getId()), segments));
+        }
 
         if (config.getGlobal().getTransitLineVehicleTypeAllocation().isEmpty()) {
             builder.addRoute(transitRouteId, getVehicleTypeFrom(scenario, transitRoute).toString());
@@ -258,7 +269,8 @@ public class RequestComposer implements Filter<RequestPipe> {
             // add route segment
             builder.addSegmentToRoute(segmentId, transitRouteId, segment.origin.getStopFacility().getId().toString(),
                     segment.destination.getStopFacility().getId().toString(),
-                    extractDistance(scenario.getNetwork(), transitRoute, segment), extractTravelTime(segment),
+                    extractDistance(getRouteDistances(scenario.getNetwork(), transitRoute), segment),
+                    extractTravelTime(segment),
                     config.getShunting().getDefaultMaximalFormationCount());
             // add route departures
             for (Departure departure : transitRoute.getDepartures().values()) {
@@ -274,8 +286,7 @@ public class RequestComposer implements Filter<RequestPipe> {
                     // adjust departure time if not first segment
                     departureTime += segment.origin.getDepartureOffset().seconds();
                 }
-                // get total and seated passengers
-                PassengerResult result = extractPassengers(passengers.get(departure.getId()), segment);
+                PassengerResult result = departurePassengers.get(departure.getId())[i];
                 // multiply with capacity factor to reflect deviations in passenger demand
                 builder.addSegmentToDeparture(departureSegmentId, departureId, segmentId,
                         toLocalDateTime(departureTime),
@@ -285,11 +296,10 @@ public class RequestComposer implements Filter<RequestPipe> {
         }
     }
 
-    private void addTransitLines(Request.Builder builder, Scenario scenario, Map<Id<TransitLine>, Map<Id<TransitRoute>, Map<Id<Departure>, List<PassengerCount>>>> passengers) {
+    private void addTransitLines(Request.Builder builder, Scenario scenario, PassengerEntryStore passengers) {
         for (TransitLine transitLine : scenario.getTransitSchedule().getTransitLines().values()) {
             for (TransitRoute transitRoute : transitLine.getRoutes().values()) {
-                addRouteWithDepartures(builder, scenario, transitLine, transitRoute,
-                        passengers.get(transitLine.getId()).get(transitRoute.getId()));
+                addRouteWithDepartures(builder, scenario, transitLine, transitRoute, passengers);
                 if (config.getDepot().isCreateAtTerminalLocations()) {
                     addDepotsToTerminalLocation(builder, scenario, transitRoute);
                 }
@@ -297,6 +307,10 @@ public class RequestComposer implements Filter<RequestPipe> {
         }
     }
 
+    private RouteDistances getRouteDistances(Network network, TransitRoute transitRoute) {
+        return routeDistances.computeIfAbsent(transitRoute, k -> RouteDistances.of(network, transitRoute));
+    }
+
     private void addLocation(Request.Builder builder, TransitStopFacility facility) {
         String facilityId = facility.getId().toString();
         if (!locations.containsKey(facility.getId())) {
@@ -359,25 +373,28 @@ public class RequestComposer implements Filter<RequestPipe> {
         }
     }
 
-    private void addDeadHeadTrips(Request.Builder builder, Scenario scenario) {
-        if (locations.keySet().size() > LOCATION_SIZE_LIMIT) {
-            throw new IllegalStateException(
-                    "Instance is to big for creating deadhead trip matrix, there have to be less than " + LOCATION_SIZE_LIMIT + " locations.");
+    private void addDeadHeadTrips(Request.Builder builder, Scenario scenario, RoutingGraph routingGraph) {
+        int locationSizeWarningLimit = config.getGlobal().getLocationSizeWarningLimit();
+        if (locations.keySet().size() > locationSizeWarningLimit) {
+            log.warn("Instance is large for creating deadhead trip matrix, there are {} locations (warning limit: {})",
+                    locations.keySet().size(), locationSizeWarningLimit);
         }
         log.info("Creating dead head trip matrix ({}x{}={})", locations.keySet().size(), locations.keySet().size(),
                 locations.keySet().size() * locations.keySet().size());
-        TrainNetworkRouter trainNetworkRouter = new TrainNetworkRouter(scenario.getNetwork(),
-                config.getGlobal().getDeadHeadTripSpeedLimit(),
-                config.getGlobal().getDeadHeadTripBeelineDistanceFactor());
-        locations.keySet().forEach(originId -> locations.keySet().forEach(destinationId -> {
-            if (!originId.equals(destinationId)) {
-                TrainNetworkRouter.PathResult pathResult = trainNetworkRouter.calculate(
-                        scenario.getTransitSchedule().getFacilities().get(originId),
-                        scenario.getTransitSchedule().getFacilities().get(destinationId));
-                builder.addDeadHeadTrip(originId.toString(), destinationId.toString(), pathResult.duration(),
-                        pathResult.distance());
-            }
-        }));
+        List<TransitStopFacility> facilities = locations.keySet()
+                .stream()
+                .map(facilityId -> scenario.getTransitSchedule().getFacilities().get(facilityId))
+                .toList();
+        RsschedRequestConfig.Global global = config.getGlobal();
+        DeadHeadTripCache cache = null;
+        if (global.getDeadHeadTripCacheDirectory() != null && !global.getDeadHeadTripCacheDirectory().isBlank()) {
+            cache = DeadHeadTripCache.load(global.getDeadHeadTripCacheDirectory(), scenario.getNetwork(),
+                    global.getAllowedModes(), global.getDeadHeadTripSpeedLimit(),
+                    global.getDeadHeadTripBeelineDistanceFactor());
+        }
+        new DeadHeadTripMatrixBuilder(routingGraph, global.getDeadHeadTripRoutingAlgorithm(),
+                global.getDeadHeadTripSpeedLimit(), global.getDeadHeadTripBeelineDistanceFactor(),
+                global.getDeadHeadTripRoutingThreads(), cache).addDeadHeadTrips(builder, facilities);
     }
 
     private void setParameters(Request.Builder builder) {
@@ -404,6 +421,35 @@ public class RequestComposer implements Filter<RequestPipe> {
     record Segment(TransitRouteStop origin, TransitRouteStop destination) {
     }
 
-    public record PassengerCount(TransitRouteStop fromStop, TransitRouteStop toStop, int count, int seats) {
+    /**
+     * Helper class to store the cumulative link lengths along a transit route
+     * <p>
+     * The transit route does not contain the first and last link of the route. Therefore, the distance of a segment
+     * starts after its from link, or at the beginning of the route if the from link is the first link, and ends before
+     * its to link.
+     *
+     * @param positions      the position of the first occurrence of each link in the route
+     * @param prefixDistance the cumulative length of the links before each position
+     */
+    record RouteDistances(Map<Id<Link>, Integer> positions, double[] prefixDistance) {
+
+        static RouteDistances of(Network network, TransitRoute transitRoute) {
+            List<Id<Link>> linkIds = transitRoute.getRoute().getLinkIds();
+            Map<Id<Link>, Integer> positions = new HashMap<>(linkIds.size());
+            double[] prefixDistance = new double[linkIds.size() + 1];
+            for (int i = 0; i < linkIds.size(); i++) {
+                positions.putIfAbsent(linkIds.get(i), i);
+                prefixDistance[i + 1] = prefixDistance[i] + network.getLinks().get(linkIds.get(i)).getLength();
+            }
+            return new RouteDistances(positions, prefixDistance);
+        }
+
+        double between(Id<Link> fromLink, Id<Link> toLink) {
+            Integer fromPosition = positions.get(fromLink);
+            Integer toPosition = positions.get(toLink);
+            int start = fromPosition == null ? 0 : fromPosition + 1;
+            int end = toPosition == null ? prefixDistance.length - 1 : toPosition;
+            return end > start ? prefixDistance[end] - prefixDistance[start] : 0.0;
+        }
     }
 }
@@ -4,8 +4,10 @@ import ch.sbb.rssched.client.pipeline.core.ResultSink;
 import ch.sbb.rssched.client.pipeline.utils.io.OutputDirectoryManager;
 import lombok.extern.log4j.Log4j2;
 
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 
 /**
  * Request JSON writer
@@ -30,8 +32,8 @@ public class RequestJSONWriter implements ResultSink<RequestPipe> {
         String filePath = new OutputDirectoryManager(outputDirectory, pipe.getRunId(), instanceId).buildFilePath(
                 REQUEST_FILE_NAME);
         log.info("Exporting request JSON to {}", filePath);
-        try (FileWriter fileWriter = new FileWriter(filePath)) {
-            fileWriter.write(pipe.getRequest().toJSON());
+        try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(filePath))) {
+            pipe.getRequest().writeTo(outputStream);
         } catch (IOException e) {
             throw new RuntimeException("Error writing the JSON file: " + e.getMessage(), e);
         }
@@ -2,19 +2,13 @@ package ch.sbb.rssched.client.pipeline.request;
 
 import ch.sbb.rssched.client.dto.request.Request;
 import ch.sbb.rssched.client.pipeline.core.Pipe;
+import ch.sbb.rssched.client.pipeline.passenger.PassengerEntryStore;
 import lombok.Getter;
 import lombok.Setter;
-import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
-import org.matsim.pt.transitSchedule.api.Departure;
-import org.matsim.pt.transitSchedule.api.TransitLine;
-import org.matsim.pt.transitSchedule.api.TransitRoute;
-
-import java.util.List;
-import java.util.Map;
 
 /**
- * A container for transporting a scenario, the run id and the final request.
+ * A container for transporting a scenario, the run id, the routing graph and the final request.
  *
  * @author munterfi
  */
@@ -23,11 +17,13 @@ public class RequestPipe implements Pipe {
 
     private final String runId;
     private final Scenario scenario;
-    private final Map<Id<TransitLine>, Map<Id<TransitRoute>, Map<Id<Departure>, List<RequestComposer.PassengerCount>>>> passengers;
+    private final PassengerEntryStore passengers;
+    @Setter
+    private RoutingGraph routingGraph;
     @Setter
     private Request request;
 
-    RequestPipe(String runId, Scenario scenario, Map<Id<TransitLine>, Map<Id<TransitRoute>, Map<Id<Departure>, List<RequestComposer.PassengerCount>>>> passengers) {
+    RequestPipe(String runId, Scenario scenario, PassengerEntryStore passengers) {
         this.runId = runId;
         this.scenario = scenario;
         this.passengers = passengers;
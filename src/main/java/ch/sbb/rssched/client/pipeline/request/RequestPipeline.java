@@ -4,6 +4,7 @@ import ch.sbb.rssched.client.config.RsschedRequestConfig;
 import ch.sbb.rssched.client.pipeline.core.Pipeline;
 import ch.sbb.rssched.client.pipeline.passenger.PassengerPipeline;
 import ch.sbb.rssched.client.pipeline.scenario.ScenarioPipeline;
+import ch.sbb.rssched.client.pipeline.utils.io.SharedScenario;
 import org.matsim.api.core.v01.Id;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
@@ -27,16 +28,21 @@ public class RequestPipeline extends Pipeline<RequestPipe> {
      * @param config The request configuration containing various parameters for the scheduler request.
      */
     public RequestPipeline(RsschedRequestConfig config) {
-        // set source
-        super(new ScenarioPassengerCollector(config.getRunId(),
-                new ScenarioPipeline(config.getInstanceId(), config.getRunId(), config.getInputDirectory(),
-                        config.getOutputDirectory(), config.getGlobal().getFilterStrategy(),
-                        collectTransitStopFacilitiesToKeep(config), config.getGlobal().getAllowedModes()),
-                new PassengerPipeline(config.getInstanceId(), config.getRunId(), config.getInputDirectory(),
-                        config.getOutputDirectory(), config.getGlobal().getFilterStrategy(),
-                        config.getGlobal().getSampleSize(), config.getGlobal().getCapacityFactor(),
-                        config.getGlobal().getSeatDurationThreshold())));
-        // add filter
+        this(config, new SharedScenario(config.getRunId(), config.getInputDirectory()));
+    }
+
+    private RequestPipeline(RsschedRequestConfig config, SharedScenario sharedScenario) {
+        // set source, both pipelines consume the same parsed transit schedule and vehicles
+        super(new ScenarioPassengerCollector(config.getRunId(), sharedScenario,
+                new ScenarioPipeline(config.getInstanceId(), sharedScenario, config.getOutputDirectory(),
+                        config.getGlobal().getFilterStrategy(), collectTransitStopFacilitiesToKeep(config),
+                        config.getGlobal().getAllowedModes()),
+                new PassengerPipeline(config.getInstanceId(), sharedScenario, config.getOutputDirectory(),
+                        config.getGlobal().getFilterStrategy(), config.getGlobal().getSampleSize(),
+                        config.getGlobal().getCapacityFactor(), config.getGlobal().getSeatDurationThreshold(),
+                        config.getGlobal().getEventAnalysisThreads())));
+        // add filters
+        addFilter(new RoutingGraphBuilder(config));
         addFilter(new RequestComposer(config));
         // add sink
         addSink(new RequestConfigWriter(config));
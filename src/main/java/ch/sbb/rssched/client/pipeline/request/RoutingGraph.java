@@ -0,0 +1,385 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable routing graph for the dead head trips
+ * <p>
+ * The masked network is stored in compressed sparse row (CSR) form: The outgoing edges of each node are stored
+ * consecutively in primitive arrays, starting at the edge offset of the node. The cost of an edge is its travel time
+ * at the free speed, capped by the speed limit of the dead head trips. Since the graph is immutable, it can be shared
+ * between routers on different threads.
+ * <p>
+ * Optionally, chains of degree-2 nodes are contracted into single edges, which keep the accumulated cost and length of
+ * the chain. This shrinks the search space of the routers, while the shortest paths between the remaining nodes are
+ * unchanged.
+ *
+ * @author munterfi
+ */
+public final class RoutingGraph {
+    private static final int NONE = -1;
+    private final List<Id<Node>> nodeIds;
+    private final double[] nodeX;
+    private final double[] nodeY;
+    private final int[] edgeOffsets;
+    private final int[] edgeHeads;
+    private final double[] edgeCosts;
+    private final double[] edgeLengths;
+    private final Map<Id<Link>, Integer> linkIndex;
+    private final int[] linkFromNodes;
+    private final int[] linkToNodes;
+
+    private RoutingGraph(List<Id<Node>> nodeIds, double[] nodeX, double[] nodeY, int[] edgeOffsets, int[] edgeHeads,
+                         double[] edgeCosts, double[] edgeLengths, Map<Id<Link>, Integer> linkIndex,
+                         int[] linkFromNodes, int[] linkToNodes) {
+        this.nodeIds = nodeIds;
+        this.nodeX = nodeX;
+        this.nodeY = nodeY;
+        this.edgeOffsets = edgeOffsets;
+        this.edgeHeads = edgeHeads;
+        this.edgeCosts = edgeCosts;
+        this.edgeLengths = edgeLengths;
+        this.linkIndex = linkIndex;
+        this.linkFromNodes = linkFromNodes;
+        this.linkToNodes = linkToNodes;
+    }
+
+    /**
+     * Builds the routing graph from all links of the network.
+     *
+     * @param network        the masked network.
+     * @param freeSpeedLimit the speed limit of the dead head trips in meters per second.
+     * @return the routing graph.
+     */
+    public static RoutingGraph of(Network network, double freeSpeedLimit) {
+        int nodeCount = network.getNodes().size();
+        List<Id<Node>> nodeIds = new ArrayList<>(nodeCount);
+        Map<Id<Node>, Integer> nodeIndex = new HashMap<>(nodeCount);
+        double[] nodeX = new double[nodeCount];
+        double[] nodeY = new double[nodeCount];
+        for (Node node : network.getNodes().values()) {
+            int index = nodeIds.size();
+            nodeIndex.put(node.getId(), index);
+            nodeIds.add(node.getId());
+            nodeX[index] = node.getCoord().getX();
+            nodeY[index] = node.getCoord().getY();
+        }
+        int linkCount = network.getLinks().size();
+        Map<Id<Link>, Integer> linkIndex = new HashMap<>(linkCount);
+        int[] tails = new int[linkCount];
+        int[] heads = new int[linkCount];
+        double[] costs = new double[linkCount];
+        double[] lengths = new double[linkCount];
+        for (Link link : network.getLinks().values()) {
+            int index = linkIndex.size();
+            linkIndex.put(link.getId(), index);
+            tails[index] = nodeIndex.get(link.getFromNode().getId());
+            heads[index] = nodeIndex.get(link.getToNode().getId());
+            costs[index] = link.getLength() / Math.min(link.getFreespeed(), freeSpeedLimit);
+            lengths[index] = link.getLength();
+        }
+        return of(nodeIds, nodeX, nodeY, tails, heads, costs, lengths, linkIndex, tails, heads);
+    }
+
+    /**
+     * Builds the routing graph from edge lists, by sorting the edges by their tail node.
+     */
+    static RoutingGraph of(List<Id<Node>> nodeIds, double[] nodeX, double[] nodeY, int[] tails, int[] heads,
+                           double[] costs, double[] lengths, Map<Id<Link>, Integer> linkIndex, int[] linkFromNodes,
+                           int[] linkToNodes) {
+        int nodeCount = nodeIds.size();
+        int edgeCount = tails.length;
+        int[] edgeOffsets = new int[nodeCount + 1];
+        for (int tail : tails) {
+            edgeOffsets[tail + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            edgeOffsets[i + 1] += edgeOffsets[i];
+        }
+        int[] position = new int[nodeCount];
+        System.arraycopy(edgeOffsets, 0, position, 0, nodeCount);
+        int[] edgeHeads = new int[edgeCount];
+        double[] edgeCosts = new double[edgeCount];
+        double[] edgeLengths = new double[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            int slot = position[tails[e]]++;
+            edgeHeads[slot] = heads[e];
+            edgeCosts[slot] = costs[e];
+            edgeLengths[slot] = lengths[e];
+        }
+        return new RoutingGraph(List.copyOf(nodeIds), nodeX, nodeY, edgeOffsets, edgeHeads, edgeCosts, edgeLengths,
+                Map.copyOf(linkIndex), linkFromNodes, linkToNodes);
+    }
+
+    /**
+     * Contracts the chains of degree-2 nodes into single edges.
+     * <p>
+     * A node is contracted if it is connected to exactly two distinct neighbours, with at most one edge in each
+     * direction per neighbour, and it is not an end node of a protected link. The end nodes of the links of the stop
+     * facilities must be protected, since the routes start and end there.
+     *
+     * @param protectedLinkIds the links whose end nodes are kept.
+     * @return the contracted routing graph.
+     */
+    public RoutingGraph contractChains(Collection<Id<Link>> protectedLinkIds) {
+        int nodeCount = getNodeCount();
+        boolean[] contractible = findContractibleNodes(protectedLinkIds);
+        // remap the remaining nodes
+        int[] nodeMapping = new int[nodeCount];
+        List<Id<Node>> newNodeIds = new ArrayList<>();
+        for (int node = 0; node < nodeCount; node++) {
+            nodeMapping[node] = contractible[node] ? NONE : newNodeIds.size();
+            if (!contractible[node]) {
+                newNodeIds.add(nodeIds.get(node));
+            }
+        }
+        double[] newNodeX = new double[newNodeIds.size()];
+        double[] newNodeY = new double[newNodeIds.size()];
+        for (int node = 0; node < nodeCount; node++) {
+            if (nodeMapping[node] != NONE) {
+                newNodeX[nodeMapping[node]] = nodeX[node];
+                newNodeY[nodeMapping[node]] = nodeY[node];
+            }
+        }
+        // follow each edge of a remaining node through the chain of contracted nodes
+        EdgeList edges = new EdgeList(getEdgeCount());
+        for (int tail = 0; tail < nodeCount; tail++) {
+            if (contractible[tail]) {
+                continue;
+            }
+            for (int edge = firstEdge(tail); edge < lastEdge(tail); edge++) {
+                double cost = edgeCosts[edge];
+                double length = edgeLengths[edge];
+                int previous = tail;
+                int current = edgeHeads[edge];
+                while (current != NONE && contractible[current]) {
+                    int next = findChainEdge(current, previous);
+                    if (next == NONE) {
+                        // one-way chain in the opposite direction
+                        current = NONE;
+                        break;
+                    }
+                    cost += edgeCosts[next];
+                    length += edgeLengths[next];
+                    previous = current;
+                    current = edgeHeads[next];
+                }
+                if (current != NONE && current != tail) {
+                    edges.add(nodeMapping[tail], nodeMapping[current], cost, length);
+                }
+            }
+        }
+        // links with a contracted end node are no longer part of the graph
+        int[] newLinkFromNodes = new int[linkFromNodes.length];
+        int[] newLinkToNodes = new int[linkToNodes.length];
+        for (int link = 0; link < linkFromNodes.length; link++) {
+            boolean removed = linkFromNodes[link] == NONE || nodeMapping[linkFromNodes[link]] == NONE
+                    || nodeMapping[linkToNodes[link]] == NONE;
+            newLinkFromNodes[link] = removed ? NONE : nodeMapping[linkFromNodes[link]];
+            newLinkToNodes[link] = removed ? NONE : nodeMapping[linkToNodes[link]];
+        }
+        return of(newNodeIds, newNodeX, newNodeY, edges.tails(), edges.heads(), edges.costs(), edges.lengths(),
+                linkIndex, newLinkFromNodes, newLinkToNodes);
+    }
+
+    /**
+     * Builds the reverse routing graph, in which every edge points from its head to its tail node. The node indices and
+     * the links are the same as in this graph.
+     *
+     * @return the reverse routing graph.
+     */
+    RoutingGraph reverse() {
+        int edgeCount = getEdgeCount();
+        int[] tails = new int[edgeCount];
+        for (int node = 0; node < getNodeCount(); node++) {
+            Arrays.fill(tails, firstEdge(node), lastEdge(node), node);
+        }
+        return of(nodeIds, nodeX, nodeY, edgeHeads, tails, edgeCosts, edgeLengths, linkIndex, linkFromNodes,
+                linkToNodes);
+    }
+
+    private boolean[] findContractibleNodes(Collection<Id<Link>> protectedLinkIds) {
+        int nodeCount = getNodeCount();
+        boolean[] isProtected = new boolean[nodeCount];
+        for (Id<Link> linkId : protectedLinkIds) {
+            Integer index = linkIndex.get(linkId);
+            if (index != null && linkFromNodes[index] != NONE) {
+                isProtected[linkFromNodes[index]] = true;
+                isProtected[linkToNodes[index]] = true;
+            }
+        }
+        // collect the neighbours of each node over the incoming and outgoing edges
+        int[] firstNeighbour = new int[nodeCount];
+        int[] secondNeighbour = new int[nodeCount];
+        int[] inDegree = new int[nodeCount];
+        boolean[] contractible = new boolean[nodeCount];
+        Arrays.fill(firstNeighbour, NONE);
+        Arrays.fill(secondNeighbour, NONE);
+        Arrays.fill(contractible, true);
+        for (int tail = 0; tail < nodeCount; tail++) {
+            for (int edge = firstEdge(tail); edge < lastEdge(tail); edge++) {
+                int head = edgeHeads[edge];
+                inDegree[head]++;
+                contractible[tail] &= addNeighbour(firstNeighbour, secondNeighbour, tail, head);
+                contractible[head] &= addNeighbour(firstNeighbour, secondNeighbour, head, tail);
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            int outDegree = lastEdge(node) - firstEdge(node);
+            contractible[node] &= !isProtected[node] && secondNeighbour[node] != NONE && outDegree <= 2
+                    && inDegree[node] <= 2 && hasDistinctOutEdges(node);
+        }
+        return contractible;
+    }
+
+    private static boolean addNeighbour(int[] firstNeighbour, int[] secondNeighbour, int node, int neighbour) {
+        if (neighbour == node) {
+            return false;
+        }
+        if (firstNeighbour[node] == NONE || firstNeighbour[node] == neighbour) {
+            firstNeighbour[node] = neighbour;
+            return true;
+        }
+        if (secondNeighbour[node] == NONE || secondNeighbour[node] == neighbour) {
+            secondNeighbour[node] = neighbour;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean hasDistinctOutEdges(int node) {
+        return lastEdge(node) - firstEdge(node) < 2 || edgeHeads[firstEdge(node)] != edgeHeads[firstEdge(node) + 1];
+    }
+
+    /**
+     * @return the edge leaving the chain node away from the previous node, or none if the chain is one-way.
+     */
+    private int findChainEdge(int node, int previous) {
+        for (int edge = firstEdge(node); edge < lastEdge(node); edge++) {
+            if (edgeHeads[edge] != previous) {
+                return edge;
+            }
+        }
+        return NONE;
+    }
+
+    public int getNodeCount() {
+        return nodeIds.size();
+    }
+
+    public int getEdgeCount() {
+        return edgeHeads.length;
+    }
+
+    Id<Node> nodeId(int node) {
+        return nodeIds.get(node);
+    }
+
+    double x(int node) {
+        return nodeX[node];
+    }
+
+    double y(int node) {
+        return nodeY[node];
+    }
+
+    int firstEdge(int node) {
+        return edgeOffsets[node];
+    }
+
+    int lastEdge(int node) {
+        return edgeOffsets[node + 1];
+    }
+
+    int head(int edge) {
+        return edgeHeads[edge];
+    }
+
+    double cost(int edge) {
+        return edgeCosts[edge];
+    }
+
+    double length(int edge) {
+        return edgeLengths[edge];
+    }
+
+    /**
+     * @return the index of the from node of the link, where a trip arriving on the link ends.
+     */
+    int linkFromNode(Id<Link> linkId) {
+        return linkFromNodes[requireLink(linkId)];
+    }
+
+    /**
+     * @return the index of the to node of the link, where a trip departing from the link starts.
+     */
+    int linkToNode(Id<Link> linkId) {
+        return linkToNodes[requireLink(linkId)];
+    }
+
+    /**
+     * Growable list of edges, used to collect the edges of a contracted graph.
+     */
+    private static final class EdgeList {
+        private int size = 0;
+        private int[] tails;
+        private int[] heads;
+        private double[] costs;
+        private double[] lengths;
+
+        EdgeList(int capacity) {
+            tails = new int[Math.max(capacity, 1)];
+            heads = new int[tails.length];
+            costs = new double[tails.length];
+            lengths = new double[tails.length];
+        }
+
+        void add(int tail, int head, double cost, double length) {
+            if (size == tails.length) {
+                tails = Arrays.copyOf(tails, size * 2);
+                heads = Arrays.copyOf(heads, size * 2);
+                costs = Arrays.copyOf(costs, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+            }
+            tails[size] = tail;
+            heads[size] = head;
+            costs[size] = cost;
+            lengths[size] = length;
+            size++;
+        }
+
+        int[] tails() {
+            return Arrays.copyOf(tails, size);
+        }
+
+        int[] heads() {
+            return Arrays.copyOf(heads, size);
+        }
+
+        double[] costs() {
+            return Arrays.copyOf(costs, size);
+        }
+
+        double[] lengths() {
+            return Arrays.copyOf(lengths, size);
+        }
+    }
+
+    private int requireLink(Id<Link> linkId) {
+        Integer index = linkIndex.get(linkId);
+        if (index == null || linkFromNodes[index] == NONE) {
+            throw new IllegalArgumentException("Link " + linkId + " is not part of the routing graph.");
+        }
+        return index;
+    }
+}
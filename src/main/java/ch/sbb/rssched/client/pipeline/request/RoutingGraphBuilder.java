@@ -0,0 +1,51 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import ch.sbb.rssched.client.config.RsschedRequestConfig;
+import ch.sbb.rssched.client.pipeline.core.Filter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Routing graph builder
+ * <p>
+ * Builds the immutable routing graph for the dead head trips from the masked network of the scenario. If enabled, the
+ * chains of degree-2 nodes are contracted, while the links of the stop facilities stay intact.
+ *
+ * @author munterfi
+ * @see RoutingGraph
+ */
+@Log4j2
+@RequiredArgsConstructor
+public class RoutingGraphBuilder implements Filter<RequestPipe> {
+    private final RsschedRequestConfig config;
+
+    @Override
+    public void apply(RequestPipe pipe) {
+        var network = pipe.getScenario().getNetwork();
+        log.info("Building routing graph (nodes: {}, links: {})", network.getNodes().size(),
+                network.getLinks().size());
+        RoutingGraph graph = RoutingGraph.of(network, config.getGlobal().getDeadHeadTripSpeedLimit());
+        log.info("Done (graph nodes: {}, edges: {})", graph.getNodeCount(), graph.getEdgeCount());
+        if (config.getGlobal().isDeadHeadTripGraphContraction()) {
+            graph = contract(graph, pipe.getScenario().getTransitSchedule().getFacilities().values());
+        }
+        pipe.setRoutingGraph(graph);
+    }
+
+    private static RoutingGraph contract(RoutingGraph graph, Collection<TransitStopFacility> facilities) {
+        log.info("Contracting degree-2 chains of routing graph (stop facilities: {})", facilities.size());
+        Set<Id<Link>> protectedLinkIds = facilities.stream()
+                .map(TransitStopFacility::getLinkId)
+                .collect(Collectors.toSet());
+        RoutingGraph contracted = graph.contractChains(protectedLinkIds);
+        log.info("Done (graph nodes: {}, edges: {})", contracted.getNodeCount(), contracted.getEdgeCount());
+        return contracted;
+    }
+}
@@ -1,40 +1,117 @@
 package ch.sbb.rssched.client.pipeline.request;
 
+import ch.sbb.rssched.client.config.RsschedRequestConfig.Global.RoutingAlgorithm;
 import lombok.extern.log4j.Log4j2;
-import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.api.core.v01.network.Node;
-import org.matsim.api.core.v01.population.Person;
-import org.matsim.core.network.NetworkUtils;
-import org.matsim.core.router.DijkstraFactory;
-import org.matsim.core.router.util.LeastCostPathCalculator;
-import org.matsim.core.router.util.TravelDisutility;
-import org.matsim.core.trafficmonitoring.FreeSpeedTravelTime;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
-import org.matsim.vehicles.Vehicle;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Train network router
  * <p>
- * Calculates the shortest path between two links in the network for train routing.
+ * Calculates the shortest path between two links in the network for train routing. Besides the point-to-point
+ * calculation, a matrix mode is available, which grows one least-cost tree per origin and reads off the paths to all
+ * destinations at once.
+ * <p>
+ * The router runs a Dijkstra search on the primitive arrays of an immutable {@link RoutingGraph}. The cost of a link is
+ * its travel time at the free speed, capped by the speed limit. The search state is reused between searches, therefore
+ * a router instance is not thread-safe, while the graph can be shared between routers.
+ * <p>
+ * The point-to-point searches can alternatively use an A* search with landmarks or a bidirectional Dijkstra search.
+ * Both find the same least-cost paths, but settle fewer nodes. They pay off for sparse point queries only: In the
+ * matrix mode, they run one point-to-point search per destination for a few destinations, while the least-cost tree
+ * is grown for more destinations, since n point searches per origin would settle more nodes than one tree. Use
+ * {@link #factory} to share the preprocessed data of the algorithm between the routers of several threads.
  *
  * @author munterfi
- * @see TravelDisutility
+ * @see RoutingGraph
  */
 @Log4j2
 public class TrainNetworkRouter {
     private static final Double TOLERANCE = 0.001;
-    private final Network network;
+    private static final int LANDMARK_COUNT = 16;
+    private static final int POINT_QUERY_LIMIT = 8;
+    private final RoutingGraph graph;
+    private final RoutingAlgorithm algorithm;
+    private final RoutingGraph reverseGraph;
+    private final Landmarks landmarks;
     private final double freeSpeedLimit;
     private final double beelineDistanceFactor;
-    private final LeastCostPathCalculator lpc;
+    private final double[] costs;
+    private final double[] lengths;
+    private final int[] reached;
+    private final int[] targets;
+    private final NodeHeap heap;
+    private final double[] backwardCosts;
+    private final double[] backwardLengths;
+    private final int[] backwardReached;
+    private final NodeHeap backwardHeap;
+    private int search = 0;
 
     public TrainNetworkRouter(Network network, double freeSpeedLimit, double beelineDistanceFactor) {
-        this.network = network;
+        this(RoutingGraph.of(network, freeSpeedLimit), freeSpeedLimit, beelineDistanceFactor);
+    }
+
+    TrainNetworkRouter(RoutingGraph graph, double freeSpeedLimit, double beelineDistanceFactor) {
+        this(graph, RoutingAlgorithm.DIJKSTRA, null, null, freeSpeedLimit, beelineDistanceFactor);
+    }
+
+    private TrainNetworkRouter(RoutingGraph graph, RoutingAlgorithm algorithm, RoutingGraph reverseGraph,
+                               Landmarks landmarks, double freeSpeedLimit, double beelineDistanceFactor) {
+        this.graph = graph;
+        this.algorithm = algorithm;
+        this.reverseGraph = reverseGraph;
+        this.landmarks = landmarks;
         this.freeSpeedLimit = freeSpeedLimit;
         this.beelineDistanceFactor = beelineDistanceFactor;
-        this.lpc = new DijkstraFactory(false).createPathCalculator(network, new TrainTravelDisutility(),
-                new FreeSpeedTravelTime());
+        this.costs = new double[graph.getNodeCount()];
+        this.lengths = new double[graph.getNodeCount()];
+        this.reached = new int[graph.getNodeCount()];
+        this.targets = new int[graph.getNodeCount()];
+        this.heap = new NodeHeap(graph.getNodeCount());
+        boolean bidirectional = algorithm == RoutingAlgorithm.BIDIRECTIONAL;
+        this.backwardCosts = bidirectional ? new double[graph.getNodeCount()] : null;
+        this.backwardLengths = bidirectional ? new double[graph.getNodeCount()] : null;
+        this.backwardReached = bidirectional ? new int[graph.getNodeCount()] : null;
+        this.backwardHeap = bidirectional ? new NodeHeap(graph.getNodeCount()) : null;
+    }
+
+    /**
+     * Creates a factory of routers for the routing algorithm.
+     * <p>
+     * The reverse graph and the landmarks are calculated once and shared by all routers of the factory, while every
+     * router has its own search state.
+     *
+     * @param graph                 the routing graph.
+     * @param algorithm             the algorithm of the point-to-point searches.
+     * @param freeSpeedLimit        the speed limit of the dead head trips in meters per second.
+     * @param beelineDistanceFactor the factor applied to the beeline distance, if no path is found.
+     * @return the factory of routers.
+     */
+    static Supplier<TrainNetworkRouter> factory(RoutingGraph graph, RoutingAlgorithm algorithm, double freeSpeedLimit,
+                                                double beelineDistanceFactor) {
+        RoutingGraph reverseGraph = null;
+        Landmarks landmarks = null;
+        switch (algorithm) {
+            case ASTAR_LANDMARKS:
+                reverseGraph = graph.reverse();
+                landmarks = Landmarks.select(graph, reverseGraph, LANDMARK_COUNT);
+                log.info("Selected {} landmarks for the A* search", Math.min(LANDMARK_COUNT, graph.getNodeCount()));
+                break;
+            case BIDIRECTIONAL:
+                reverseGraph = graph.reverse();
+                break;
+            case DIJKSTRA:
+                break;
+        }
+        RoutingGraph sharedReverseGraph = reverseGraph;
+        Landmarks sharedLandmarks = landmarks;
+        return () -> new TrainNetworkRouter(graph, algorithm, sharedReverseGraph, sharedLandmarks, freeSpeedLimit,
+                beelineDistanceFactor);
     }
 
     /**
@@ -45,72 +122,210 @@ public class TrainNetworkRouter {
      * @return A record containing the duration in seconds and the distance in meters of the shortest path.
      */
     public PathResult calculate(TransitStopFacility from, TransitStopFacility to) {
-        Node fromNode = network.getLinks().get(from.getLinkId()).getToNode();
-        Node toNode = network.getLinks().get(to.getLinkId()).getFromNode();
-        LeastCostPathCalculator.Path path = lpc.calcLeastCostPath(fromNode, toNode, 0, null, null);
-        if (path == null) {
-            double beelineDistance = NetworkUtils.getEuclideanDistance(fromNode.getCoord(), toNode.getCoord());
-            double distance = beelineDistance * beelineDistanceFactor;
-            double duration = distance / freeSpeedLimit;
-            log.warn(
-                    "Setting duration and distance to {}s / {}m (beeline distance: {}m times factor: {}) for route from {} to {}",
-                    Math.round(duration), Math.round(distance), Math.round(beelineDistance), beelineDistanceFactor,
-                    fromNode.getId(), toNode.getId());
-            return new PathResult((int) Math.round(duration), (int) Math.round(distance));
+        int fromNode = graph.linkToNode(from.getLinkId());
+        int toNode = graph.linkFromNode(to.getLinkId());
+        switch (algorithm) {
+            case ASTAR_LANDMARKS:
+                return searchAStar(fromNode, toNode);
+            case BIDIRECTIONAL:
+                return searchBidirectional(fromNode, toNode);
+            default:
+                grow(fromNode, new int[]{toNode});
+                return readResult(fromNode, toNode);
         }
-        double travelTime = path.travelCost;
-        double travelDistance = extractPathLength(path);
-        validateFreeSpeedLimit(travelTime, travelDistance);
-        return new PathResult((int) Math.round(travelTime), (int) Math.round(travelDistance));
     }
 
-    private void validateFreeSpeedLimit(double travelTime, double travelDistance) {
-        double travelSpeed = (travelDistance / travelTime);
-        if (travelSpeed > freeSpeedLimit + TOLERANCE) {
-            throw new IllegalArgumentException(
-                    String.format("Travel speed (%.2f km/h) exceeds freespeed limit (%.2f km/h)", travelSpeed * 3.6,
-                            freeSpeedLimit * 3.6));
+    /**
+     * Calculate the shortest paths from one origin to many destinations.
+     * <p>
+     * Instead of running a point-to-point search for every relation, one least-cost tree is grown from the origin until
+     * all destinations are settled, and the duration and distance to every destination are read off the tree. With the
+     * A* or bidirectional algorithm, a point-to-point search is run for every destination instead, as long as there are
+     * only a few destinations. Destinations that are not reachable are estimated using the beeline distance.
+     *
+     * @param from         The origin transit stop facility.
+     * @param destinations The destination transit stop facilities, the origin itself is skipped.
+     * @return A map from destination to the record containing the duration in seconds and the distance in meters of
+     * the shortest path, in the iteration order of the destinations.
+     */
+    public Map<TransitStopFacility, PathResult> calculate(TransitStopFacility from,
+                                                          Collection<TransitStopFacility> destinations) {
+        if (algorithm != RoutingAlgorithm.DIJKSTRA && destinations.size() <= POINT_QUERY_LIMIT) {
+            Map<TransitStopFacility, PathResult> results = new LinkedHashMap<>(destinations.size());
+            for (TransitStopFacility to : destinations) {
+                if (!to.getId().equals(from.getId())) {
+                    results.put(to, calculate(from, to));
+                }
+            }
+            return results;
+        }
+        int fromNode = graph.linkToNode(from.getLinkId());
+        int[] toNodes = destinations.stream()
+                .filter(to -> !to.getId().equals(from.getId()))
+                .mapToInt(to -> graph.linkFromNode(to.getLinkId()))
+                .toArray();
+        grow(fromNode, toNodes);
+
+        Map<TransitStopFacility, PathResult> results = new LinkedHashMap<>(destinations.size());
+        for (TransitStopFacility to : destinations) {
+            if (to.getId().equals(from.getId())) {
+                continue;
+            }
+            results.put(to, readResult(fromNode, graph.linkFromNode(to.getLinkId())));
         }
+        return results;
     }
 
     /**
-     * Extracts the length of the path in meters from the given LeastCostPathCalculator.Path.
-     *
-     * @param path The path for which to extract the length.
-     * @return The length of the path in meters.
+     * Grows the least-cost tree from the source node, until all target nodes are settled or the reachable graph is
+     * exhausted.
      */
-    private double extractPathLength(LeastCostPathCalculator.Path path) {
-        double length = 0.0;
-        for (Link link : path.links) {
-            length += link.getLength();
+    private void grow(int source, int[] targetNodes) {
+        search++;
+        heap.clear();
+        int remaining = 0;
+        for (int target : targetNodes) {
+            if (targets[target] != search) {
+                targets[target] = search;
+                remaining++;
+            }
+        }
+        reach(source, 0, 0);
+        while (!heap.isEmpty() && remaining > 0) {
+            int node = heap.poll();
+            if (targets[node] == search) {
+                remaining--;
+            }
+            for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++) {
+                int head = graph.head(edge);
+                double cost = costs[node] + graph.cost(edge);
+                if (reached[head] != search || cost < costs[head]) {
+                    reach(head, cost, lengths[node] + graph.length(edge));
+                }
+            }
         }
-        return length;
     }
 
     /**
-     * Record representing the result of the shortest path calculation.
+     * A* search guided by the lower bounds of the landmarks. Since the bounds are admissible, the path is optimal as
+     * soon as the target is settled.
      */
-    public record PathResult(int duration, int distance) {
+    private PathResult searchAStar(int source, int target) {
+        search++;
+        heap.clear();
+        reach(source, 0, 0, landmarks.lowerBound(source, target));
+        while (!heap.isEmpty()) {
+            int node = heap.poll();
+            if (node == target) {
+                return readResult(source, target);
+            }
+            for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++) {
+                int head = graph.head(edge);
+                double cost = costs[node] + graph.cost(edge);
+                if (reached[head] != search || cost < costs[head]) {
+                    reach(head, cost, lengths[node] + graph.length(edge), cost + landmarks.lowerBound(head, target));
+                }
+            }
+        }
+        return estimateBeeline(source, target);
     }
 
     /**
-     * The disutility is computed using the link's length and its free speed, representing the time it takes to traverse
-     * the link.
-     * <p>
-     * Minimum travel disutility for any link is set to 0, ensuring no fixed penalty for using any link.
-     *
-     * @see TravelDisutility
-     * @see TrainNetworkRouter
+     * Bidirectional Dijkstra search, alternating between the forward search from the source and the backward search
+     * on the reverse graph from the target. The best path over the nodes reached by both searches is final, as soon as
+     * the sum of the smallest keys of both heaps is not smaller than its cost.
      */
-    private final class TrainTravelDisutility implements TravelDisutility {
-        @Override
-        public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
-            return link.getLength() / Math.min(link.getFreespeed(), freeSpeedLimit);
+    private PathResult searchBidirectional(int source, int target) {
+        search++;
+        heap.clear();
+        backwardHeap.clear();
+        reach(source, 0, 0);
+        backwardReached[target] = search;
+        backwardCosts[target] = 0;
+        backwardLengths[target] = 0;
+        backwardHeap.offer(target, 0);
+        double bestCost = source == target ? 0 : Double.POSITIVE_INFINITY;
+        double bestLength = 0;
+        while (!heap.isEmpty() && !backwardHeap.isEmpty() && heap.peekKey() + backwardHeap.peekKey() < bestCost) {
+            boolean forward = heap.peekKey() <= backwardHeap.peekKey();
+            RoutingGraph searchGraph = forward ? graph : reverseGraph;
+            double[] searchCosts = forward ? costs : backwardCosts;
+            double[] searchLengths = forward ? lengths : backwardLengths;
+            int[] searchReached = forward ? reached : backwardReached;
+            NodeHeap searchHeap = forward ? heap : backwardHeap;
+            double[] otherCosts = forward ? backwardCosts : costs;
+            double[] otherLengths = forward ? backwardLengths : lengths;
+            int[] otherReached = forward ? backwardReached : reached;
+            int node = searchHeap.poll();
+            for (int edge = searchGraph.firstEdge(node); edge < searchGraph.lastEdge(node); edge++) {
+                int head = searchGraph.head(edge);
+                double cost = searchCosts[node] + searchGraph.cost(edge);
+                if (searchReached[head] == search && cost >= searchCosts[head]) {
+                    continue;
+                }
+                searchReached[head] = search;
+                searchCosts[head] = cost;
+                searchLengths[head] = searchLengths[node] + searchGraph.length(edge);
+                searchHeap.offer(head, cost);
+                // both searches meet at the head node
+                if (otherReached[head] == search && cost + otherCosts[head] < bestCost) {
+                    bestCost = cost + otherCosts[head];
+                    bestLength = searchLengths[head] + otherLengths[head];
+                }
+            }
         }
+        if (bestCost == Double.POSITIVE_INFINITY) {
+            return estimateBeeline(source, target);
+        }
+        return toResult(bestCost, bestLength);
+    }
+
+    private void reach(int node, double cost, double length) {
+        reach(node, cost, length, cost);
+    }
 
-        @Override
-        public double getLinkMinimumTravelDisutility(Link link) {
-            return 0;
+    private void reach(int node, double cost, double length, double key) {
+        reached[node] = search;
+        costs[node] = cost;
+        lengths[node] = length;
+        heap.offer(node, key);
+    }
+
+    private PathResult readResult(int fromNode, int toNode) {
+        if (reached[toNode] != search) {
+            return estimateBeeline(fromNode, toNode);
         }
+        return toResult(costs[toNode], lengths[toNode]);
+    }
+
+    private PathResult toResult(double travelTime, double travelDistance) {
+        validateFreeSpeedLimit(travelTime, travelDistance);
+        return new PathResult((int) Math.round(travelTime), (int) Math.round(travelDistance));
+    }
+
+    private PathResult estimateBeeline(int fromNode, int toNode) {
+        double beelineDistance = Math.hypot(graph.x(toNode) - graph.x(fromNode), graph.y(toNode) - graph.y(fromNode));
+        double distance = beelineDistance * beelineDistanceFactor;
+        double duration = distance / freeSpeedLimit;
+        log.warn(
+                "Setting duration and distance to {}s / {}m (beeline distance: {}m times factor: {}) for route from {} to {}",
+                Math.round(duration), Math.round(distance), Math.round(beelineDistance), beelineDistanceFactor,
+                graph.nodeId(fromNode), graph.nodeId(toNode));
+        return new PathResult((int) Math.round(duration), (int) Math.round(distance));
+    }
+
+    private void validateFreeSpeedLimit(double travelTime, double travelDistance) {
+        double travelSpeed = (travelDistance / travelTime);
+        if (travelSpeed > freeSpeedLimit + TOLERANCE) {
+            throw new IllegalArgumentException(
+                    String.format("Travel speed (%.2f km/h) exceeds freespeed limit (%.2f km/h)", travelSpeed * 3.6,
+                            freeSpeedLimit * 3.6));
+        }
+    }
+
+    /**
+     * Record representing the result of the shortest path calculation.
+     */
+    public record PathResult(int duration, int distance) {
     }
 }
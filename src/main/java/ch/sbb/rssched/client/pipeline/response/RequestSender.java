@@ -1,20 +1,44 @@
 package ch.sbb.rssched.client.pipeline.response;
 
+import ch.sbb.rssched.client.dto.WireFormat;
+import ch.sbb.rssched.client.dto.request.Request;
 import ch.sbb.rssched.client.dto.response.Response;
 import ch.sbb.rssched.client.pipeline.core.Filter;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 
+import java.io.BufferedOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Sends the request to the scheduler.
+ * <p>
+ * The request is encoded into a temporary file, from which the HTTP client streams the body. Therefore, the encoded
+ * request is never held in memory as a whole, and a failed serialization is reported before anything is sent. On the
+ * wire, the request is encoded as compact JSON or in a binary {@link WireFormat}, and optionally compressed with gzip.
+ * The format is announced in the Content-Type header and requested in the Accept header, with JSON as fallback.
+ * Compression is opt-in, since not all schedulers decode a gzip request body. If the scheduler rejects a binary or
+ * compressed request as bad request or unsupported media type, the request is encoded again and sent as uncompressed
+ * JSON.
+ * <p>
+ * The response is parsed while it is received, according to its Content-Type header, and compressed responses are
+ * accepted. A response with a missing or unknown Content-Type is parsed as JSON. The raw bytes of a JSON response are
+ * copied to a temporary file on the fly, which the {@link ResponseJSONWriter} keeps as is, instead of serializing the
+ * parsed response again.
  *
  * @author munterfi
  */
@@ -22,31 +46,152 @@ import java.net.http.HttpResponse;
 @Log4j2
 public class RequestSender implements Filter<ResponsePipe> {
     public static final String SOLVER_URL_FORMAT = "%s:%d/solve";
+    private static final int BUFFER_SIZE = 1 << 16;
+    // a scheduler not decoding the body may report it as unsupported media type or as malformed request
+    private static final Set<Integer> FALLBACK_STATUS_CODES = Set.of(400, 415);
+    private static final String GZIP = "gzip";
+    private static final String REQUEST_PREFIX = "scheduler_request";
+    private static final String RAW_RESPONSE_PREFIX = "scheduler_response";
     private final String baseUrl;
     private final int port;
+    private final WireFormat format;
+    private final boolean compressRequest;
 
     @Override
     public void apply(ResponsePipe pipe) {
+        List<Path> requestFiles = new ArrayList<>(2);
         try {
             String url = String.format(SOLVER_URL_FORMAT, baseUrl, port);
             log.info("Sending request to {}...", url);
-            String json = pipe.getRequest().toJSON();
             HttpClient client = HttpClient.newHttpClient();
-            HttpRequest request = HttpRequest.newBuilder().uri(URI.create(url))
-                    .header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(json)).build();
-            HttpResponse<String> httpResponse = client.send(request, HttpResponse.BodyHandlers.ofString());
+            requestFiles.add(writeRequest(pipe.getRequest(), format, compressRequest));
+            HttpResponse<InputStream> httpResponse = send(client, url, requestFiles.get(0), format, compressRequest);
+            boolean plainJson = format == WireFormat.JSON && !compressRequest;
+            if (!plainJson && FALLBACK_STATUS_CODES.contains(httpResponse.statusCode())) {
+                log.warn("Scheduler rejected {} request{} with status code {}, sending it as uncompressed JSON", format,
+                        compressRequest ? " compressed with gzip" : "", httpResponse.statusCode());
+                httpResponse.body().close();
+                requestFiles.add(writeRequest(pipe.getRequest(), WireFormat.JSON, false));
+                httpResponse = send(client, url, requestFiles.get(1), WireFormat.JSON, false);
+            }
             log.info("Received HTTP response with status code: {}", httpResponse.statusCode());
             if (httpResponse.statusCode() == 200) {
-                ObjectMapper objectMapper = new ObjectMapper();
-                objectMapper.registerModule(new JavaTimeModule());
-                Response response = objectMapper.readValue(httpResponse.body(), Response.class);
-                pipe.setResponse(response);
-                log.info("Successfully parsed the response: {}", response.getInfo());
+                readBody(httpResponse, pipe);
+                log.info("Successfully parsed the response: {}", pipe.getResponse().getInfo());
             } else {
+                httpResponse.body().close();
                 throw new IOException("Received response: Status Code = " + httpResponse.statusCode());
             }
         } catch (IOException | InterruptedException e) {
             throw new RuntimeException(e);
+        } finally {
+            deleteRequestFiles(requestFiles);
+        }
+    }
+
+    private static HttpResponse<InputStream> send(HttpClient client, String url, Path requestFile, WireFormat format,
+                                                  boolean compress) throws IOException, InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder().uri(URI.create(url))
+                .header("Content-Type", format.getMediaType())
+                .header("Accept", format == WireFormat.JSON ? format.getMediaType() : String.format(
+                        "%s, %s;q=0.5", format.getMediaType(), WireFormat.JSON.getMediaType()))
+                .header("Accept-Encoding", GZIP)
+                .POST(HttpRequest.BodyPublishers.ofFile(requestFile));
+        if (compress) {
+            builder.header("Content-Encoding", GZIP);
+        }
+        return client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * Encodes the request into a temporary file, which is sent as body. The file is removed if the encoding fails.
+     */
+    private static Path writeRequest(Request request, WireFormat format, boolean compress) throws IOException {
+        Path requestFile = Files.createTempFile(REQUEST_PREFIX, compress ? ".gz" : "");
+        try (OutputStream fileOutputStream = Files.newOutputStream(requestFile);
+             OutputStream outputStream = compress ? new GZIPOutputStream(fileOutputStream,
+                     BUFFER_SIZE) : new BufferedOutputStream(fileOutputStream, BUFFER_SIZE)) {
+            request.writeTo(outputStream, format);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(requestFile);
+            throw e;
+        }
+        return requestFile;
+    }
+
+    private static void deleteRequestFiles(List<Path> requestFiles) {
+        for (Path requestFile : requestFiles) {
+            try {
+                Files.deleteIfExists(requestFile);
+            } catch (IOException e) {
+                log.warn("Failed to delete temporary request file {}: {}", requestFile, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Parses the response from the body stream. A JSON response is copied to a temporary file while it is parsed.
+     */
+    private static void readBody(HttpResponse<InputStream> httpResponse, ResponsePipe pipe) throws IOException {
+        WireFormat responseFormat = httpResponse.headers()
+                .firstValue("Content-Type")
+                .map(WireFormat::fromMediaType)
+                .orElse(WireFormat.JSON);
+        boolean compressed = httpResponse.headers()
+                .firstValue("Content-Encoding")
+                .filter(GZIP::equalsIgnoreCase)
+                .isPresent();
+        InputStream body = httpResponse.body();
+        try (InputStream inputStream = compressed ? new GZIPInputStream(body, BUFFER_SIZE) : body) {
+            if (responseFormat != WireFormat.JSON) {
+                pipe.setResponse(Response.read(inputStream, responseFormat));
+                return;
+            }
+            Path rawResponseFile = Files.createTempFile(RAW_RESPONSE_PREFIX, ".json");
+            rawResponseFile.toFile().deleteOnExit();
+            try (OutputStream rawResponse = new BufferedOutputStream(Files.newOutputStream(rawResponseFile))) {
+                InputStream teeInputStream = new TeeInputStream(inputStream, rawResponse);
+                pipe.setResponse(Response.read(teeInputStream, responseFormat));
+                // copy trailing bytes after the parsed value, to keep the raw response complete
+                teeInputStream.transferTo(OutputStream.nullOutputStream());
+            }
+            pipe.setRawResponseFile(rawResponseFile);
+        }
+    }
+
+    /**
+     * Input stream copying all bytes read to an output stream.
+     */
+    private static class TeeInputStream extends FilterInputStream {
+        private final OutputStream copy;
+
+        TeeInputStream(InputStream inputStream, OutputStream copy) {
+            super(inputStream);
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                copy.write(value);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                copy.write(buffer, offset, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // read the skipped bytes, so they are copied as well
+            return Math.max(0, read(new byte[(int) Math.min(n, BUFFER_SIZE)]));
         }
     }
 }
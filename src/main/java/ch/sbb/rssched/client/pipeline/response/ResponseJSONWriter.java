@@ -6,11 +6,16 @@ import lombok.extern.log4j.Log4j2;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Response JSON writer
  * <p>
- * Writes the scheduler response to a JSON file in the specified output directory.
+ * Writes the scheduler response to a JSON file in the specified output directory. If the raw JSON of the response was
+ * kept when it was received, the raw file is moved to the output directory instead of serializing the parsed response
+ * again.
  *
  * @author munterfi
  */
@@ -29,9 +34,16 @@ public class ResponseJSONWriter implements ResultSink<ResponsePipe> {
     public void process(ResponsePipe pipe) {
         String filePath = new OutputDirectoryManager(outputDirectory, pipe.getRunId(), instanceId).buildFilePath(
                 RESPONSE_FILE_NAME);
-        log.info("Exporting response JSON to {}", filePath);
-        try (FileWriter fileWriter = new FileWriter(filePath)) {
-            fileWriter.write(pipe.getResponse().toJSON());
+        try {
+            if (pipe.getRawResponseFile() != null) {
+                log.info("Exporting raw response JSON to {}", filePath);
+                Files.move(pipe.getRawResponseFile(), Path.of(filePath), StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+            log.info("Exporting response JSON to {}", filePath);
+            try (FileWriter fileWriter = new FileWriter(filePath)) {
+                fileWriter.write(pipe.getResponse().toJSON());
+            }
         } catch (IOException e) {
             throw new RuntimeException("Error writing the JSON file: " + e.getMessage(), e);
         }
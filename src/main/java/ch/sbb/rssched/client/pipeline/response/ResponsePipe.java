@@ -7,6 +7,8 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 
+import java.nio.file.Path;
+
 @RequiredArgsConstructor
 @Getter
 public class ResponsePipe implements Pipe {
@@ -15,5 +17,10 @@ public class ResponsePipe implements Pipe {
     private final Request request;
     @Setter
     private Response response;
+    /**
+     * Temporary file with the raw JSON of the response as received, if the response was sent as JSON.
+     */
+    @Setter
+    private Path rawResponseFile;
 
 }
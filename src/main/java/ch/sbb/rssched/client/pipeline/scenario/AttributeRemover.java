@@ -9,12 +9,26 @@ import java.util.Map;
 
 /**
  * Clears all attributes from the network, transit schedule and transit vehicles in a scenario.
+ * <p>
+ * If the transit schedule and vehicles are shared with other pipelines, only the network attributes are cleared, since
+ * the elements of the shared scenario must not be modified. Their attributes are already cleared once when the shared
+ * scenario is loaded, so the exported scenario is the same in both modes.
  *
  * @author munterfi
  */
 @Log4j2
 class AttributeRemover implements Filter<ScenarioPipe> {
 
+    private final boolean sharedTransit;
+
+    AttributeRemover() {
+        this(false);
+    }
+
+    AttributeRemover(boolean sharedTransit) {
+        this.sharedTransit = sharedTransit;
+    }
+
     private static <K, V extends Attributable> void clearAttributes(Map<K, V> map) {
         map.values().forEach(value -> value.getAttributes().clear());
     }
@@ -25,6 +39,12 @@ class AttributeRemover implements Filter<ScenarioPipe> {
     }
 
     private void clearAll(Scenario scenario) {
+        if (sharedTransit) {
+            log.info("Clearing network attributes (transit attributes are cleared by the shared scenario)");
+            clearAttributes(scenario.getNetwork().getLinks());
+            clearAttributes(scenario.getNetwork().getNodes());
+            return;
+        }
         log.info("Clearing attributes");
         clearAttributes(scenario.getTransitSchedule().getTransitLines());
         clearAttributes(scenario.getTransitSchedule().getFacilities());
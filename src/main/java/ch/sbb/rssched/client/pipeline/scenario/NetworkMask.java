@@ -4,18 +4,18 @@ import ch.sbb.rssched.client.pipeline.core.Filter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.matsim.api.core.v01.Id;
-import org.matsim.api.core.v01.Identifiable;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Masks the network based on transit line IDs of interest and the allowed modes for pt
@@ -28,38 +28,28 @@ class NetworkMask implements Filter<ScenarioPipe> {
 
     public static final String DEAD_HEAD_TRIP_MODE = "deadHeadTrip";
     public static final String SERVICE_TRIP_MODE = "serviceTrip";
+    private static final Set<String> DEAD_HEAD_TRIP_MODES = Set.of(DEAD_HEAD_TRIP_MODE);
+    private static final Set<String> SERVICE_TRIP_MODES = Set.of(DEAD_HEAD_TRIP_MODE, SERVICE_TRIP_MODE);
 
     private final Set<String> allowedModes;
 
     private static void maskNodes(Scenario scenario) {
-        // collect IDs of remaining links
+        // flag the nodes of the remaining links by their id index
         var network = scenario.getNetwork();
-        List<Id<Link>> remainingLinkIds = network.getLinks().keySet().stream().toList();
-        var nodeIdsToKeep = remainingLinkIds.stream()
-                .flatMap(linkId -> Stream.of(network.getLinks().get(linkId).getFromNode().getId(),
-                        network.getLinks().get(linkId).getToNode().getId()))
-                .distinct()
-                .toList();
+        BitSet nodeIdsToKeep = new BitSet();
+        for (Link link : network.getLinks().values()) {
+            nodeIdsToKeep.set(link.getFromNode().getId().index());
+            nodeIdsToKeep.set(link.getToNode().getId().index());
+        }
 
         network.getNodes()
                 .keySet()
                 .stream()
-                .filter(nodeId -> !nodeIdsToKeep.contains(nodeId))
+                .filter(nodeId -> !nodeIdsToKeep.get(nodeId.index()))
+                .toList()
                 .forEach(network::removeNode);
     }
 
-    private static void clearAllowedModes(Network network) {
-        network.getLinks().values().forEach(link -> link.setAllowedModes(new HashSet<>()));
-    }
-
-    private static void retainLinks(Network network, Set<Id<Link>> allowedModeLinkIds) {
-        network.getLinks()
-                .keySet()
-                .stream()
-                .filter(linkId -> !allowedModeLinkIds.contains(linkId))
-                .forEach(network::removeLink);
-    }
-
     private static Set<Id<Link>> getTransitLineLinkIds(Set<Id<TransitLine>> transitLineIds, TransitSchedule transitSchedule) {
         return transitLineIds.stream()
                 .flatMap(transitLineId -> transitSchedule.getTransitLines()
@@ -89,56 +79,56 @@ class NetworkMask implements Filter<ScenarioPipe> {
                 pipe.scenario.getNetwork().getLinks().size());
     }
 
+    /**
+     * Masks the links in a single pass over the network: Links without an allowed mode are removed, the remaining links
+     * get the rssched modes. The mode sets are immutable and shared between all links.
+     */
     public void maskLinks(Scenario scenario, Set<Id<TransitLine>> transitLineIds) {
         var transitSchedule = scenario.getTransitSchedule();
         var network = scenario.getNetwork();
 
         // get link ids
         Set<Id<Link>> transitLineLinkIds = getTransitLineLinkIds(transitLineIds, transitSchedule);
-        Set<Id<Link>> allowedModeLinkIds = getLinksWithAllowedMode(network);
-        ensureAllTransitLinksAreAllowed(network, allowedModeLinkIds, transitLineLinkIds);
-
-        // remove not needed links from network
-        retainLinks(network, allowedModeLinkIds);
-
-        // write rssched modes
-        clearAllowedModes(network);
-        addAllowedMode(network, allowedModeLinkIds, DEAD_HEAD_TRIP_MODE);
-        addAllowedMode(network, transitLineLinkIds, SERVICE_TRIP_MODE);
+        ensureAllTransitLinksAreAllowed(network, transitLineLinkIds);
+
+        // remove not needed links from network and write rssched modes
+        List<Id<Link>> linkIdsToRemove = new ArrayList<>();
+        for (Link link : network.getLinks().values()) {
+            if (!hasAllowedMode(link)) {
+                linkIdsToRemove.add(link.getId());
+            } else if (transitLineLinkIds.contains(link.getId())) {
+                link.setAllowedModes(SERVICE_TRIP_MODES);
+            } else {
+                link.setAllowedModes(DEAD_HEAD_TRIP_MODES);
+            }
+        }
+        linkIdsToRemove.forEach(network::removeLink);
     }
 
-    private void ensureAllTransitLinksAreAllowed(Network network, Set<Id<Link>> allowedLinks, Set<Id<Link>> transitLinks) {
-        if (!allowedLinks.containsAll(transitLinks)) {
-            var missingLinks = transitLinks.stream().filter(id -> !allowedLinks.contains(id)).map(linkId -> {
-                var link = network.getLinks().get(linkId);
-                return String.format("%s (%s)", linkId, link.getAllowedModes());
-            }).toList();
+    private void ensureAllTransitLinksAreAllowed(Network network, Set<Id<Link>> transitLinks) {
+        var missingLinks = transitLinks.stream().filter(linkId -> {
+            var link = network.getLinks().get(linkId);
+            return link == null || !hasAllowedMode(link);
+        }).map(linkId -> {
+            var link = network.getLinks().get(linkId);
+            return String.format("%s (%s)", linkId, link == null ? "not in network" : link.getAllowedModes());
+        }).toList();
+        if (!missingLinks.isEmpty()) {
             throw new IllegalStateException(
                     String.format("The following transit line links are missing the allowed modes (%s): %s",
                             allowedModes, missingLinks));
         }
     }
 
-    private void addAllowedMode(Network network, Set<Id<Link>> linksIds, String allowedMode) {
-        network.getLinks().values().stream().filter(link -> linksIds.contains(link.getId())).forEach(link -> {
-            var linkAllowedModes = new HashSet<>(link.getAllowedModes());
-            linkAllowedModes.add(allowedMode);
-            link.setAllowedModes(linkAllowedModes);
-        });
-    }
-
-    private Set<Id<Link>> getLinksWithAllowedMode(Network network) {
+    private boolean hasAllowedMode(Link link) {
         if (allowedModes.isEmpty()) {
-            return network.getLinks().keySet();
+            return true;
         }
-
-        return network.getLinks()
-                .values()
-                .stream()
-                .filter(link -> link.getAllowedModes()
-                        .stream()
-                        .anyMatch(allowedModes::contains)) // check if link's mode is in allowedModes set
-                .map(Identifiable::getId)
-                .collect(Collectors.toSet());
+        for (String mode : link.getAllowedModes()) {
+            if (allowedModes.contains(mode)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
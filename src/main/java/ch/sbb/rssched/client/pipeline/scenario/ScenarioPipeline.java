@@ -2,6 +2,7 @@ package ch.sbb.rssched.client.pipeline.scenario;
 
 import ch.sbb.rssched.client.config.selection.FilterStrategy;
 import ch.sbb.rssched.client.pipeline.core.Pipeline;
+import ch.sbb.rssched.client.pipeline.utils.io.SharedScenario;
 import org.matsim.api.core.v01.Id;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
@@ -30,6 +31,24 @@ public class ScenarioPipeline extends Pipeline<ScenarioPipe> {
     public ScenarioPipeline(String instanceId, String runId, String inputDirectory, String outputDirectory, FilterStrategy filterStrategy, Set<Id<TransitStopFacility>> transitStopFacilitiesToKeep, Set<String> allowedModes) {
         // set source
         super(new ScenarioSource(runId, inputDirectory));
+        configure(instanceId, outputDirectory, filterStrategy, transitStopFacilitiesToKeep, allowedModes, false);
+    }
+
+    /**
+     * Constructs a ScenarioPipeline working on a view of a scenario shared with other pipelines.
+     *
+     * @param instanceId      the ID of the RSSched instance (=request) to solve
+     * @param sharedScenario  the transit schedule and vehicles shared with other pipelines, which are not modified
+     * @param outputDirectory the output directory to export the processed scenario files
+     * @param filterStrategy  the strategy for filtering transit lines
+     */
+    public ScenarioPipeline(String instanceId, SharedScenario sharedScenario, String outputDirectory, FilterStrategy filterStrategy, Set<Id<TransitStopFacility>> transitStopFacilitiesToKeep, Set<String> allowedModes) {
+        // set source
+        super(new ScenarioSource(sharedScenario));
+        configure(instanceId, outputDirectory, filterStrategy, transitStopFacilitiesToKeep, allowedModes, true);
+    }
+
+    private void configure(String instanceId, String outputDirectory, FilterStrategy filterStrategy, Set<Id<TransitStopFacility>> transitStopFacilitiesToKeep, Set<String> allowedModes, boolean sharedTransit) {
         // filter transit lines
         addFilter(new TransitLineFilter(filterStrategy));
         // mask scenario
@@ -37,7 +56,7 @@ public class ScenarioPipeline extends Pipeline<ScenarioPipe> {
         addFilter(new TransitVehicleMask());
         addFilter(new NetworkMask(allowedModes));
         // clear attributes
-        addFilter(new AttributeRemover());
+        addFilter(new AttributeRemover(sharedTransit));
         // add sink
         addSink(new LineSelectionCSVWriter(outputDirectory, instanceId));
         addSink(new ScenarioExporter(outputDirectory, instanceId));
@@ -2,15 +2,20 @@ package ch.sbb.rssched.client.pipeline.scenario;
 
 import ch.sbb.rssched.client.pipeline.core.DataSource;
 import ch.sbb.rssched.client.pipeline.utils.io.ScenarioLoader;
+import ch.sbb.rssched.client.pipeline.utils.io.SharedScenario;
 
 /**
  * Loads a scenario for further processing in a pipeline,
+ * <p>
+ * If a shared scenario is set, the transit schedule and vehicles are not parsed again, instead a view on the shared
+ * scenario is created, which can be masked without affecting the shared scenario.
  *
  * @author munterfi
  */
 class ScenarioSource implements DataSource<ScenarioPipe> {
     private final String runId;
     private final String inputFolder;
+    private final SharedScenario sharedScenario;
 
     /**
      * Constructs a ScenarioLoader object with the specified run ID and input folder.
@@ -21,10 +26,25 @@ class ScenarioSource implements DataSource<ScenarioPipe> {
     public ScenarioSource(String runId, String inputFolder) {
         this.runId = runId;
         this.inputFolder = inputFolder;
+        this.sharedScenario = null;
+    }
+
+    /**
+     * Constructs a ScenarioSource creating a maskable view on the shared scenario.
+     *
+     * @param sharedScenario the scenario shared with other pipelines
+     */
+    public ScenarioSource(SharedScenario sharedScenario) {
+        this.runId = sharedScenario.getRunId();
+        this.inputFolder = null;
+        this.sharedScenario = sharedScenario;
     }
 
     @Override
     public ScenarioPipe fetch() {
+        if (sharedScenario != null) {
+            return new ScenarioPipe(runId, sharedScenario.createView(true));
+        }
         return new ScenarioPipe(runId, new ScenarioLoader(runId, inputFolder).load(true));
     }
 }
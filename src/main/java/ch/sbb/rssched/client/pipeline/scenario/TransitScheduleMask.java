@@ -6,10 +6,10 @@ import lombok.extern.log4j.Log4j2;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.pt.transitSchedule.api.TransitLine;
-import org.matsim.pt.transitSchedule.api.TransitRouteStop;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
+import java.util.BitSet;
 import java.util.Set;
 
 /**
@@ -49,21 +49,20 @@ class TransitScheduleMask implements Filter<ScenarioPipe> {
     }
 
     private void maskTransitStopFacilities(Set<Id<TransitLine>> transitLineIds, TransitSchedule transitSchedule) {
-        var transitStopsToKeep = transitLineIds.stream()
+        // flag the served stop facilities by their id index
+        BitSet transitStopsToKeep = new BitSet();
+        transitLineIds.stream()
                 .flatMap(transitLineId -> transitSchedule.getTransitLines()
                         .get(transitLineId)
                         .getRoutes()
                         .values()
                         .stream()
-                        .flatMap(transitRoute -> transitRoute.getStops()
-                                .stream()
-                                .map(TransitRouteStop::getStopFacility)))
-                .distinct()
-                .toList();
+                        .flatMap(transitRoute -> transitRoute.getStops().stream()))
+                .forEach(stop -> transitStopsToKeep.set(stop.getStopFacility().getId().index()));
         var transitStopsToRemove = transitSchedule.getFacilities()
                 .values()
                 .stream()
-                .filter(stopFacility -> !transitStopsToKeep.contains(stopFacility))
+                .filter(stopFacility -> !transitStopsToKeep.get(stopFacility.getId().index()))
                 .toList();
 
 
@@ -6,10 +6,11 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
-import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
 import org.matsim.vehicles.Vehicles;
 
-import java.util.List;
+import java.util.BitSet;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -20,23 +21,26 @@ import java.util.Set;
 @Log4j2
 class TransitVehicleMask implements Filter<ScenarioPipe> {
 
-    private static List<Vehicle> maskVehicles(Set<Id<TransitLine>> transitLineIds, TransitSchedule transitSchedule, Vehicles transitVehicles) {
-        var transitVehiclesToKeep = transitLineIds.stream().flatMap(
+    private static void maskVehicles(Set<Id<TransitLine>> transitLineIds, TransitSchedule transitSchedule, Vehicles transitVehicles) {
+        // flag the vehicles of the departures by their id index
+        BitSet transitVehiclesToKeep = new BitSet();
+        transitLineIds.stream().flatMap(
                         transitLineId -> transitSchedule.getTransitLines().get(transitLineId).getRoutes().values().stream()
-                                .flatMap(transitRoute -> transitRoute.getDepartures().values().stream()
-                                        .map(departure -> transitVehicles.getVehicles().get(departure.getVehicleId()))))
-                .distinct().toList();
-        var transitVehiclesToRemove = transitVehicles.getVehicles().values().stream()
-                .filter(vehicle -> !transitVehiclesToKeep.contains(vehicle)).toList();
-        transitVehiclesToRemove.forEach(vehicle -> transitVehicles.removeVehicle(vehicle.getId()));
-        return transitVehiclesToKeep;
+                                .flatMap(transitRoute -> transitRoute.getDepartures().values().stream()))
+                .forEach(departure -> transitVehiclesToKeep.set(departure.getVehicleId().index()));
+        var transitVehiclesToRemove = transitVehicles.getVehicles().keySet().stream()
+                .filter(vehicleId -> !transitVehiclesToKeep.get(vehicleId.index())).toList();
+        transitVehiclesToRemove.forEach(transitVehicles::removeVehicle);
     }
 
-    private static void maskVehicleTypes(Vehicles transitVehicles, List<Vehicle> transitVehiclesToKeep) {
-        var transitVehicleTypesToKeep = transitVehiclesToKeep.stream().map(Vehicle::getType).distinct().toList();
-        var transitVehicleTypesToRemove = transitVehicles.getVehicleTypes().values().stream()
-                .filter(vehicleType -> !transitVehicleTypesToKeep.contains(vehicleType)).toList();
-        transitVehicleTypesToRemove.forEach(vehicleType -> transitVehicles.removeVehicleType(vehicleType.getId()));
+    private static void maskVehicleTypes(Vehicles transitVehicles) {
+        // keep the types of the remaining vehicles
+        Set<Id<VehicleType>> transitVehicleTypesToKeep = new HashSet<>();
+        transitVehicles.getVehicles().values()
+                .forEach(vehicle -> transitVehicleTypesToKeep.add(vehicle.getType().getId()));
+        var transitVehicleTypesToRemove = transitVehicles.getVehicleTypes().keySet().stream()
+                .filter(vehicleTypeId -> !transitVehicleTypesToKeep.contains(vehicleTypeId)).toList();
+        transitVehicleTypesToRemove.forEach(transitVehicles::removeVehicleType);
     }
 
     @Override
@@ -49,7 +53,8 @@ class TransitVehicleMask implements Filter<ScenarioPipe> {
         var transitVehicles = scenario.getTransitVehicles();
         log.info("Masking transit vehicles (vehicle: {}, types: {})", transitVehicles.getVehicles().size(),
                 transitVehicles.getVehicleTypes().size());
-        maskVehicleTypes(transitVehicles, maskVehicles(transitLineIds, transitSchedule, transitVehicles));
+        maskVehicles(transitLineIds, transitSchedule, transitVehicles);
+        maskVehicleTypes(transitVehicles);
         log.info("Done (remaining vehicle: {}, types: {})", transitVehicles.getVehicles().size(),
                 transitVehicles.getVehicleTypes().size());
     }
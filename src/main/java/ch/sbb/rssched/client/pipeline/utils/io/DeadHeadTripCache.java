@@ -0,0 +1,198 @@
+package ch.sbb.rssched.client.pipeline.utils.io;
+
+import ch.sbb.rssched.client.pipeline.request.TrainNetworkRouter;
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Persistent on-disk cache of dead head trip routing results.
+ * <p>
+ * The results are stored per origin and destination facility in a gzipped CSV file. The file name contains a
+ * fingerprint of the masked network and the routing parameters (allowed modes, speed limit and beeline distance
+ * factor), so that a cache is only reused if the routing would produce the same results. Each relation stores the links
+ * of its origin and destination, a relation of a location that moved to another link is therefore a miss, while the
+ * relations between the other locations remain cached.
+ * <p>
+ * The cache directory is never pruned: A file is kept for each network and set of routing parameters that was used, and
+ * files of outdated networks can safely be deleted.
+ *
+ * @author munterfi
+ */
+@Log4j2
+public class DeadHeadTripCache {
+    private static final String FILE_NAME_FORMAT = "deadhead_trips_%s.csv.gz";
+    private static final String[] HEADER = {"origin_id", "destination_id", "origin_link_id", "destination_link_id",
+            "duration", "distance"};
+    private final Map<Id<TransitStopFacility>, Map<Id<TransitStopFacility>, Entry>> results = new HashMap<>();
+    @Getter
+    private final String filePath;
+    private boolean modified = false;
+
+    private DeadHeadTripCache(String filePath) {
+        this.filePath = filePath;
+    }
+
+    /**
+     * Loads the cache for the given network and routing parameters from the cache directory. If no cache file exists
+     * for the fingerprint, an empty cache is returned.
+     *
+     * @param cacheDirectory        the directory containing the cache files
+     * @param network               the masked network used for routing
+     * @param allowedModes          the allowed modes used to mask the network
+     * @param freeSpeedLimit        the speed limit used in routing
+     * @param beelineDistanceFactor the beeline distance factor for unreachable destinations
+     * @return the dead head trip cache
+     */
+    public static DeadHeadTripCache load(String cacheDirectory, Network network, Set<String> allowedModes,
+                                         double freeSpeedLimit, double beelineDistanceFactor) {
+        String fingerprint = fingerprint(network, allowedModes, freeSpeedLimit, beelineDistanceFactor);
+        String filePath = Paths.get(cacheDirectory, String.format(FILE_NAME_FORMAT, fingerprint)).toString();
+        DeadHeadTripCache cache = new DeadHeadTripCache(filePath);
+        if (Files.exists(Paths.get(filePath))) {
+            cache.read();
+            log.info("Loaded {} dead head trips from cache {}", cache.size(), filePath);
+        } else {
+            log.info("No dead head trip cache found for network fingerprint {}", fingerprint);
+        }
+        return cache;
+    }
+
+    private static String fingerprint(Network network, Set<String> allowedModes, double freeSpeedLimit,
+                                      double beelineDistanceFactor) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        network.getLinks()
+                .values()
+                .stream()
+                .sorted(Comparator.comparing(link -> link.getId().toString()))
+                .forEach(link -> update(digest, describe(link)));
+        update(digest, String.join(",", new TreeSet<>(allowedModes)));
+        update(digest, Double.toString(freeSpeedLimit));
+        update(digest, Double.toString(beelineDistanceFactor));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String describe(Link link) {
+        return String.format("%s;%s;%s;%s;%s;%s;%s;%s;%s;%s", link.getId(), link.getFromNode().getId(),
+                link.getToNode().getId(), link.getFromNode().getCoord().getX(), link.getFromNode().getCoord().getY(),
+                link.getToNode().getCoord().getX(), link.getToNode().getCoord().getY(), link.getLength(),
+                link.getFreespeed(), new TreeSet<>(link.getAllowedModes()));
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) '\n');
+    }
+
+    /**
+     * Looks up the cached result of a relation, which is only valid if both facilities are still on the links the
+     * relation was routed from and to.
+     *
+     * @param origin      the origin facility
+     * @param destination the destination facility
+     * @return the cached path result, or null if the relation is missing or one of the facilities moved
+     */
+    public TrainNetworkRouter.PathResult get(TransitStopFacility origin, TransitStopFacility destination) {
+        Map<Id<TransitStopFacility>, Entry> originResults = results.get(origin.getId());
+        Entry entry = originResults == null ? null : originResults.get(destination.getId());
+        if (entry == null || !entry.originLinkId().equals(origin.getLinkId()) || !entry.destinationLinkId()
+                .equals(destination.getLinkId())) {
+            return null;
+        }
+        return entry.pathResult();
+    }
+
+    public void put(TransitStopFacility origin, TransitStopFacility destination,
+                    TrainNetworkRouter.PathResult pathResult) {
+        results.computeIfAbsent(origin.getId(), ignored -> new HashMap<>())
+                .put(destination.getId(), new Entry(origin.getLinkId(), destination.getLinkId(), pathResult));
+        modified = true;
+    }
+
+    public int size() {
+        return results.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * Writes the cache to disk, if new results were added since loading. The file is replaced atomically, so that a
+     * failed write never leaves a truncated cache behind.
+     */
+    public void save() {
+        if (!modified) {
+            return;
+        }
+        Path path = Paths.get(filePath);
+        Path tempPath = path.resolveSibling("." + path.getFileName());
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            try (CSVPrinter csv = new CSVPrinter(IOUtils.getBufferedWriter(tempPath.toString()),
+                    CSVFormat.DEFAULT.builder().setHeader(HEADER).build())) {
+                for (var origin : results.entrySet()) {
+                    for (var destination : origin.getValue().entrySet()) {
+                        Entry entry = destination.getValue();
+                        csv.printRecord(origin.getKey().toString(), destination.getKey().toString(),
+                                entry.originLinkId().toString(), entry.destinationLinkId().toString(),
+                                entry.pathResult().duration(), entry.pathResult().distance());
+                    }
+                }
+            }
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        modified = false;
+        log.info("Stored {} dead head trips in cache {}", size(), filePath);
+    }
+
+    private void read() {
+        try (CSVParser csv = new CSVParser(IOUtils.getBufferedReader(filePath),
+                CSVFormat.DEFAULT.builder().setHeader(HEADER).setSkipHeaderRecord(true).build())) {
+            for (CSVRecord record : csv) {
+                results.computeIfAbsent(Id.create(record.get(HEADER[0]), TransitStopFacility.class),
+                        ignored -> new HashMap<>()).put(Id.create(record.get(HEADER[1]), TransitStopFacility.class),
+                        new Entry(Id.createLinkId(record.get(HEADER[2])), Id.createLinkId(record.get(HEADER[3])),
+                                new TrainNetworkRouter.PathResult(Integer.parseInt(record.get(HEADER[4])),
+                                        Integer.parseInt(record.get(HEADER[5])))));
+            }
+        } catch (IOException | RuntimeException e) {
+            // the cache is only an optimization, therefore a corrupt file is discarded and recomputed
+            log.warn("Discarding unreadable dead head trip cache {}: {}", filePath, e.getMessage());
+            results.clear();
+        }
+    }
+
+    /**
+     * Cached result of a relation together with the links it was routed from and to.
+     */
+    private record Entry(Id<Link> originLinkId, Id<Link> destinationLinkId, TrainNetworkRouter.PathResult pathResult) {
+    }
+}
@@ -2,6 +2,7 @@ package ch.sbb.rssched.client.pipeline.utils.io;
 
 import lombok.extern.log4j.Log4j2;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
 import org.matsim.core.network.io.MatsimNetworkReader;
@@ -9,6 +10,13 @@ import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
 import org.matsim.vehicles.MatsimVehicleReader;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 @Log4j2
 public class ScenarioLoader {
     private static final String NETWORK_FILE = "output_network.xml.gz";
@@ -17,24 +25,46 @@ public class ScenarioLoader {
     private static final String EVENTS_FILE = "output_events.xml.gz";
     private final String runId;
     private final String inputFolder;
+    private final boolean concurrent;
 
     /**
-     * Constructs a ScenarioLoader object with the specified run ID, input folder.
+     * Constructs a ScenarioLoader object with the specified run ID and input folder, which reads the files one after
+     * the other.
      *
      * @param runId       the ID of the simulation run
      * @param inputFolder the folder containing the output files of the run
      */
     public ScenarioLoader(String runId, String inputFolder) {
+        this(runId, inputFolder, false);
+    }
+
+    /**
+     * Constructs a ScenarioLoader object with the specified run ID, input folder and load mode.
+     *
+     * @param runId       the ID of the simulation run
+     * @param inputFolder the folder containing the output files of the run
+     * @param concurrent  if true, the network and the transit vehicles are read on separate threads, while the transit
+     *                    schedule is read on the calling thread. The readers create the ids of the elements they
+     *                    reference concurrently, which relies on {@link org.matsim.api.core.v01.Id#create} being thread
+     *                    safe.
+     */
+    public ScenarioLoader(String runId, String inputFolder, boolean concurrent) {
         this.runId = runId;
         this.inputFolder = inputFolder;
+        this.concurrent = concurrent;
     }
 
     public Scenario load(boolean network) {
         Config config = ConfigUtils.createConfig();
         Scenario scenario = ScenarioUtils.createScenario(config);
 
+        if (concurrent) {
+            loadConcurrently(scenario, network);
+            return scenario;
+        }
+
         if (network) {
-            new MatsimNetworkReader(scenario.getNetwork()).readFile(buildPath(NETWORK_FILE));
+            loadNetwork(scenario.getNetwork());
         }
 
         new TransitScheduleReader(scenario).readFile(buildPath(TRANSIT_SCHEDULE_FILE));
@@ -43,6 +73,42 @@ public class ScenarioLoader {
         return scenario;
     }
 
+    /**
+     * Reads the independent files in parallel, each reader only writes into its own container of the scenario. The
+     * transit schedule reader does not depend on the network or the vehicles, therefore the threads are only joined at
+     * the end and the loading time is bounded by the slowest file.
+     */
+    private void loadConcurrently(Scenario scenario, boolean network) {
+        ExecutorService executor = Executors.newFixedThreadPool(network ? 2 : 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>(2);
+            if (network) {
+                futures.add(executor.submit(() -> loadNetwork(scenario.getNetwork())));
+            }
+            futures.add(executor.submit(() -> new MatsimVehicleReader(scenario.getTransitVehicles()).readFile(
+                    buildPath(TRANSIT_VEHICLES_FILE))));
+            new TransitScheduleReader(scenario).readFile(buildPath(TRANSIT_SCHEDULE_FILE));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading scenario of run " + runId, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Failed to load scenario of run " + runId + ": " + e.getCause().getMessage(),
+                    e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void loadNetwork(Network network) {
+        new MatsimNetworkReader(network).readFile(buildPath(NETWORK_FILE));
+    }
+
     public String getEventsFile() {
         return buildPath(EVENTS_FILE);
     }
@@ -0,0 +1,139 @@
+package ch.sbb.rssched.client.pipeline.utils.io;
+
+import lombok.Getter;
+import lombok.extern.log4j.Log4j2;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.MutableScenario;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.utils.objectattributes.attributable.Attributable;
+import org.matsim.vehicles.Vehicles;
+
+import java.util.Map;
+
+/**
+ * Network, transit schedule and vehicles of a simulation run, parsed once and shared between pipelines.
+ * <p>
+ * The scenario is loaded lazily by the first caller, concurrent callers wait for the loading to finish. The files are
+ * read concurrently by the {@link ScenarioLoader}. The shared scenario must be treated as immutable. Pipelines which
+ * mask the scenario have to work on a view, which contains own containers for the transit schedule and vehicles that
+ * reference the shared elements. The network is only used by one pipeline, therefore it is not part of the shared
+ * scenario, but handed to the first view requesting it.
+ * <p>
+ * The attributes of the network, transit schedule and vehicle types are cleared once after loading, since they are not
+ * used by the pipelines and not exported. This way, no pipeline has to modify the shared elements.
+ *
+ * @author munterfi
+ */
+@Log4j2
+public class SharedScenario {
+    @Getter
+    private final String runId;
+    private final ScenarioLoader loader;
+    private volatile Scenario scenario;
+    private Network network;
+
+    /**
+     * Constructs a SharedScenario with the specified run ID and input folder.
+     *
+     * @param runId       the ID of the simulation run
+     * @param inputFolder the folder containing the output files of the run
+     */
+    public SharedScenario(String runId, String inputFolder) {
+        this.runId = runId;
+        this.loader = new ScenarioLoader(runId, inputFolder, true);
+    }
+
+    /**
+     * Returns the shared scenario, loading it on the first call.
+     *
+     * @return the shared scenario without the network, which must not be modified
+     */
+    public Scenario get() {
+        Scenario result = scenario;
+        if (result == null) {
+            synchronized (this) {
+                result = scenario;
+                if (result == null) {
+                    log.info("Loading shared network, transit schedule and vehicles of run {}", runId);
+                    Scenario loaded = loader.load(true);
+                    clearAttributes(loaded);
+                    network = loaded.getNetwork();
+                    MutableScenario shared = ScenarioUtils.createMutableScenario(ConfigUtils.createConfig());
+                    shared.setTransitSchedule(loaded.getTransitSchedule());
+                    shared.setTransitVehicles(loaded.getTransitVehicles());
+                    result = shared;
+                    scenario = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a view on the shared scenario, which can be masked without affecting the shared scenario.
+     * <p>
+     * Transit lines, stop facilities, vehicle types and vehicles are added to new containers, therefore removing them
+     * from the view does not remove them from the shared scenario. The elements themselves are shared and must not be
+     * modified. The loaded network is handed to the view instead of copied, since masking the network modifies its
+     * links. Therefore, only one view can contain the network.
+     *
+     * @param network whether to hand the network to the view, the network is not shared
+     * @return the view on the shared scenario
+     * @throws IllegalStateException if the network has already been handed to another view
+     */
+    public Scenario createView(boolean network) {
+        Scenario base = get();
+        MutableScenario view = ScenarioUtils.createMutableScenario(ConfigUtils.createConfig());
+        if (network) {
+            view.setNetwork(takeNetwork());
+        }
+
+        TransitSchedule schedule = view.getTransitSchedule();
+        base.getTransitSchedule().getFacilities().values().forEach(schedule::addStopFacility);
+        base.getTransitSchedule().getTransitLines().values().forEach(schedule::addTransitLine);
+        var iterator = base.getTransitSchedule().getMinimalTransferTimes().iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            schedule.getMinimalTransferTimes()
+                    .set(iterator.getFromStopId(), iterator.getToStopId(), iterator.getSeconds());
+        }
+
+        Vehicles vehicles = view.getTransitVehicles();
+        base.getTransitVehicles().getVehicleTypes().values().forEach(vehicles::addVehicleType);
+        base.getTransitVehicles().getVehicles().values().forEach(vehicles::addVehicle);
+
+        return view;
+    }
+
+    public String getEventsFile() {
+        return loader.getEventsFile();
+    }
+
+    private synchronized Network takeNetwork() {
+        if (network == null) {
+            throw new IllegalStateException("The network of run " + runId + " has already been handed to a view.");
+        }
+        Network taken = network;
+        network = null;
+        return taken;
+    }
+
+    private static void clearAttributes(Scenario scenario) {
+        clearAttributes(scenario.getNetwork().getLinks());
+        clearAttributes(scenario.getNetwork().getNodes());
+        clearAttributes(scenario.getTransitSchedule().getTransitLines());
+        clearAttributes(scenario.getTransitSchedule().getFacilities());
+        clearAttributes(scenario.getTransitVehicles().getVehicleTypes());
+        scenario.getTransitSchedule()
+                .getTransitLines()
+                .values()
+                .forEach(transitLine -> clearAttributes(transitLine.getRoutes()));
+    }
+
+    private static <K, V extends Attributable> void clearAttributes(Map<K, V> map) {
+        map.values().forEach(value -> value.getAttributes().clear());
+    }
+}
@@ -65,7 +65,7 @@ public class IntegrationTestData {
     }
 
     @NoArgsConstructor(access = AccessLevel.PRIVATE)
-    final static class MatsimRun {
+    public final static class MatsimRun {
         public static final String INPUT_DIRECTORY = "integration-test/input/de/kelheim/kelheim-v3.0/25pct/";
         public static final String OUTPUT_DIRECTORY = "integration-test/output/de/kelheim/kelheim-v3.0/25pct/";
         public static final String ID = "kelheim-v3.0-25pct";
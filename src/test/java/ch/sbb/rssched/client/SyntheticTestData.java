@@ -0,0 +1,422 @@
+package ch.sbb.rssched.client;
+
+import ch.sbb.rssched.client.pipeline.request.RoutingGraph;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.Vehicles;
+import org.matsim.vehicles.VehiclesFactory;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Generated, reproducible test data for the unit tests and benchmarks, which do not need the downloaded scenario of
+ * the {@link IntegrationTestData}.
+ *
+ * @author munterfi
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class SyntheticTestData {
+
+    /**
+     * Builds small networks and stop facilities for the routing tests.
+     */
+    public static final class RailNetwork {
+        public static final double SPEED_LIMIT = 30;
+        public static final double BEELINE_FACTOR = 1.5;
+        private static final double GRID_SPACING = 1000;
+
+        private final Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+
+        /**
+         * Creates a grid of nodes, connected to their horizontal and vertical neighbours by links with random lengths
+         * and free speeds per direction.
+         *
+         * @param size        the number of nodes per row and column.
+         * @param seed        the seed of the random lengths and free speeds.
+         * @param oneWayShare the share of neighbours connected in one direction only.
+         * @param symmetric   true to use the same length and free speed in both directions.
+         * @return the grid network.
+         */
+        public static RailNetwork grid(int size, long seed, double oneWayShare, boolean symmetric) {
+            return grid(size, seed, oneWayShare, symmetric, 0);
+        }
+
+        /**
+         * Creates a grid, whose neighbours are connected by chains of links over intermediate nodes.
+         *
+         * @param chainNodes the number of intermediate nodes between two neighbours.
+         * @see #grid(int, long, double, boolean)
+         */
+        public static RailNetwork grid(int size, long seed, double oneWayShare, boolean symmetric, int chainNodes) {
+            Random random = new Random(seed);
+            RailNetwork network = new RailNetwork();
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    network.node(gridNode(i, j), i * GRID_SPACING, j * GRID_SPACING);
+                }
+            }
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    if (i + 1 < size) {
+                        network.connect(random, gridNode(i, j), gridNode(i + 1, j), oneWayShare, symmetric, chainNodes);
+                    }
+                    if (j + 1 < size) {
+                        network.connect(random, gridNode(i, j), gridNode(i, j + 1), oneWayShare, symmetric, chainNodes);
+                    }
+                }
+            }
+            return network;
+        }
+
+        public static String gridNode(int i, int j) {
+            return String.format("n_%d_%d", i, j);
+        }
+
+        public RailNetwork node(String id, double x, double y) {
+            Network network = scenario.getNetwork();
+            network.addNode(network.getFactory().createNode(Id.createNodeId(id), new Coord(x, y)));
+            return this;
+        }
+
+        public RailNetwork link(String id, String fromNode, String toNode, double length, double freespeed) {
+            Network network = scenario.getNetwork();
+            Link link = network.getFactory()
+                    .createLink(Id.createLinkId(id), network.getNodes().get(Id.createNodeId(fromNode)),
+                            network.getNodes().get(Id.createNodeId(toNode)));
+            link.setLength(length);
+            link.setFreespeed(freespeed);
+            link.setAllowedModes(Set.of("rail"));
+            network.addLink(link);
+            return this;
+        }
+
+        /**
+         * Adds a link in each direction with the same length and free speed, the reverse link has the suffix "_r".
+         */
+        public RailNetwork twoWayLink(String id, String fromNode, String toNode, double length, double freespeed) {
+            return link(id, fromNode, toNode, length, freespeed).link(id + "_r", toNode, fromNode, length, freespeed);
+        }
+
+        public TransitStopFacility facility(String id, String linkId) {
+            TransitStopFacility facility = scenario.getTransitSchedule()
+                    .getFactory()
+                    .createTransitStopFacility(Id.create(id, TransitStopFacility.class), new Coord(0, 0), false);
+            facility.setLinkId(Id.createLinkId(linkId));
+            return facility;
+        }
+
+        /**
+         * Creates stop facilities on randomly selected links of the network.
+         */
+        public List<TransitStopFacility> facilities(int count, long seed) {
+            Random random = new Random(seed);
+            List<Link> links = new ArrayList<>(scenario.getNetwork().getLinks().values());
+            List<TransitStopFacility> facilities = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                facilities.add(facility("stop_" + i, links.get(random.nextInt(links.size())).getId().toString()));
+            }
+            return facilities;
+        }
+
+        public Network getNetwork() {
+            return scenario.getNetwork();
+        }
+
+        public RoutingGraph graph() {
+            return RoutingGraph.of(scenario.getNetwork(), SPEED_LIMIT);
+        }
+
+        private void connect(Random random, String a, String b, double oneWayShare, boolean symmetric, int chainNodes) {
+            Network network = scenario.getNetwork();
+            Coord from = network.getNodes().get(Id.createNodeId(a)).getCoord();
+            Coord to = network.getNodes().get(Id.createNodeId(b)).getCoord();
+            List<String> nodes = new ArrayList<>(List.of(a));
+            for (int k = 1; k <= chainNodes; k++) {
+                double share = (double) k / (chainNodes + 1);
+                String node = a + "-" + b + "_" + k;
+                node(node, from.getX() + share * (to.getX() - from.getX()),
+                        from.getY() + share * (to.getY() - from.getY()));
+                nodes.add(node);
+            }
+            nodes.add(b);
+            boolean oneWay = random.nextDouble() < oneWayShare;
+            boolean forward = random.nextBoolean();
+            for (int k = 0; k + 1 < nodes.size(); k++) {
+                String id = nodes.get(k) + "-" + nodes.get(k + 1);
+                double length = GRID_SPACING / (chainNodes + 1) * (1 + random.nextDouble() * 0.5);
+                double freespeed = 20 + random.nextDouble() * 20;
+                if (oneWay) {
+                    if (forward) {
+                        link(id, nodes.get(k), nodes.get(k + 1), length, freespeed);
+                    } else {
+                        link(id + "_r", nodes.get(k + 1), nodes.get(k), length, freespeed);
+                    }
+                } else if (symmetric) {
+                    twoWayLink(id, nodes.get(k), nodes.get(k + 1), length, freespeed);
+                } else {
+                    link(id, nodes.get(k), nodes.get(k + 1), length, freespeed);
+                    link(id + "_r", nodes.get(k + 1), nodes.get(k),
+                            GRID_SPACING / (chainNodes + 1) * (1 + random.nextDouble() * 0.5),
+                            20 + random.nextDouble() * 20);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds random transit scenarios: Transit lines run along a chain of rail links, each route serves a sequence of
+     * consecutive stops, and each departure has its own vehicle. Besides the served stops and used vehicle types, the
+     * scenario contains a depot, a spare vehicle and an unused vehicle type. The departures of all lines overlap in
+     * time.
+     */
+    @NoArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class TransitScenario {
+        public static final Id<TransitStopFacility> DEPOT = Id.create("depot", TransitStopFacility.class);
+        private static final int VEHICLE_TYPE_COUNT = 4;
+        private static final int MAX_ROUTE_STOPS = 8;
+        private static final double STOP_INTERVAL = 120;
+        private static final double DWELL_TIME = 30;
+
+        /**
+         * Creates the same scenario for the same arguments.
+         *
+         * @param lineCount the number of transit lines.
+         * @param seed      the seed of the routes and departures.
+         * @return the scenario.
+         */
+        public static Scenario create(int lineCount, long seed) {
+            Random random = new Random(seed);
+            Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+            int stopCount = 4 * lineCount + 2 * MAX_ROUTE_STOPS;
+            List<Link> links = createNetwork(scenario.getNetwork(), stopCount);
+
+            TransitSchedule schedule = scenario.getTransitSchedule();
+            TransitScheduleFactory scheduleFactory = schedule.getFactory();
+            List<TransitStopFacility> stops = new ArrayList<>(stopCount);
+            for (Link link : links) {
+                TransitStopFacility stop = scheduleFactory.createTransitStopFacility(
+                        Id.create("stop_" + link.getId(), TransitStopFacility.class), link.getToNode().getCoord(),
+                        false);
+                stop.setLinkId(link.getId());
+                schedule.addStopFacility(stop);
+                stops.add(stop);
+            }
+            TransitStopFacility depot = scheduleFactory.createTransitStopFacility(DEPOT, new Coord(0, 0), false);
+            depot.setLinkId(links.get(0).getId());
+            schedule.addStopFacility(depot);
+
+            Vehicles vehicles = scenario.getTransitVehicles();
+            VehiclesFactory vehiclesFactory = vehicles.getFactory();
+            List<VehicleType> vehicleTypes = new ArrayList<>(VEHICLE_TYPE_COUNT);
+            for (int i = 0; i < VEHICLE_TYPE_COUNT; i++) {
+                vehicleTypes.add(vehiclesFactory.createVehicleType(Id.create("type_" + i, VehicleType.class)));
+                vehicles.addVehicleType(vehicleTypes.get(i));
+            }
+            VehicleType spareType = vehiclesFactory.createVehicleType(Id.create("spare", VehicleType.class));
+            vehicles.addVehicleType(spareType);
+            vehicles.addVehicleType(vehiclesFactory.createVehicleType(Id.create("unused", VehicleType.class)));
+            vehicles.addVehicle(vehiclesFactory.createVehicle(Id.createVehicleId("spare"), spareType));
+
+            for (int i = 0; i < lineCount; i++) {
+                TransitLine line = scheduleFactory.createTransitLine(Id.create("line_" + i, TransitLine.class));
+                int routeCount = 1 + random.nextInt(2);
+                for (int j = 0; j < routeCount; j++) {
+                    int first = random.nextInt(stopCount - MAX_ROUTE_STOPS);
+                    int last = first + 1 + random.nextInt(MAX_ROUTE_STOPS - 1);
+                    List<TransitRouteStop> routeStops = new ArrayList<>();
+                    List<Id<Link>> routeLinkIds = new ArrayList<>();
+                    for (int k = first; k <= last; k++) {
+                        double offset = (k - first) * STOP_INTERVAL;
+                        routeStops.add(scheduleFactory.createTransitRouteStop(stops.get(k), offset,
+                                offset + DWELL_TIME));
+                        if (k != first && k != last) {
+                            routeLinkIds.add(links.get(k).getId());
+                        }
+                    }
+                    NetworkRoute networkRoute = RouteUtils.createLinkNetworkRouteImpl(links.get(first).getId(),
+                            routeLinkIds, links.get(last).getId());
+                    TransitRoute route = scheduleFactory.createTransitRoute(
+                            Id.create(line.getId() + "_" + j, TransitRoute.class), networkRoute, routeStops, "rail");
+                    int departureCount = 1 + random.nextInt(3);
+                    for (int k = 0; k < departureCount; k++) {
+                        Departure departure = scheduleFactory.createDeparture(
+                                Id.create(route.getId() + "_" + k, Departure.class),
+                                6 * 3600 + k * 1800 + random.nextInt(600));
+                        Vehicle vehicle = vehiclesFactory.createVehicle(
+                                Id.createVehicleId(departure.getId().toString()),
+                                vehicleTypes.get(i % VEHICLE_TYPE_COUNT));
+                        vehicles.addVehicle(vehicle);
+                        departure.setVehicleId(vehicle.getId());
+                        route.addDeparture(departure);
+                    }
+                    line.addRoute(route);
+                }
+                schedule.addTransitLine(line);
+            }
+            return scenario;
+        }
+
+        /**
+         * Selects a random share of the transit lines.
+         */
+        public static Set<Id<TransitLine>> selectLines(Scenario scenario, double share, long seed) {
+            Random random = new Random(seed);
+            Set<Id<TransitLine>> lineIds = new HashSet<>();
+            for (Id<TransitLine> lineId : scenario.getTransitSchedule().getTransitLines().keySet()) {
+                if (random.nextDouble() < share) {
+                    lineIds.add(lineId);
+                }
+            }
+            return lineIds;
+        }
+
+        private static List<Link> createNetwork(Network network, int linkCount) {
+            NetworkFactory factory = network.getFactory();
+            List<Link> links = new ArrayList<>(linkCount);
+            Node from = factory.createNode(Id.createNodeId("n_0"), new Coord(0, 0));
+            network.addNode(from);
+            for (int i = 0; i < linkCount; i++) {
+                Node to = factory.createNode(Id.createNodeId("n_" + (i + 1)), new Coord((i + 1) * 1000, 0));
+                network.addNode(to);
+                Link link = factory.createLink(Id.createLinkId("l_" + i), from, to);
+                link.setLength(1000);
+                link.setFreespeed(30);
+                link.setAllowedModes(Set.of("rail"));
+                network.addLink(link);
+                links.add(link);
+                from = to;
+            }
+            return links;
+        }
+    }
+
+    /**
+     * Simulates the events of the departures of a {@link TransitScenario} and writes them to an events file.
+     * Passengers enter at a random stop and leave at a later stop of the same departure.
+     */
+    @NoArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class TransitEvents {
+        private static final int MAX_ACCESS = 4;
+
+        /**
+         * Simulates the transit driver, vehicle and passenger events of all departures of the scenario.
+         *
+         * @param scenario the scenario.
+         * @param seed     the seed of the passenger accesses and egresses.
+         * @return the events, ordered by time.
+         */
+        public static List<Event> simulate(Scenario scenario, long seed) {
+            Random random = new Random(seed);
+            List<Event> events = new ArrayList<>();
+            int personCount = 0;
+            for (TransitLine line : scenario.getTransitSchedule().getTransitLines().values()) {
+                for (TransitRoute route : line.getRoutes().values()) {
+                    List<TransitRouteStop> stops = route.getStops();
+                    for (Departure departure : route.getDepartures().values()) {
+                        Id<Vehicle> vehicleId = departure.getVehicleId();
+                        Id<Person> driverId = Id.createPersonId("pt_" + vehicleId);
+                        double time = departure.getDepartureTime();
+                        events.add(new TransitDriverStartsEvent(time - 60, driverId, vehicleId, line.getId(),
+                                route.getId(), departure.getId()));
+                        events.add(new PersonEntersVehicleEvent(time - 60, driverId, vehicleId));
+                        Map<Integer, List<Id<Person>>> egresses = new HashMap<>();
+                        for (int k = 0; k < stops.size(); k++) {
+                            double arrival = time + stops.get(k).getArrivalOffset().seconds();
+                            double departureTime = time + stops.get(k).getDepartureOffset().seconds();
+                            Id<TransitStopFacility> facilityId = stops.get(k).getStopFacility().getId();
+                            events.add(new VehicleArrivesAtFacilityEvent(arrival, vehicleId, facilityId, 0));
+                            for (Id<Person> personId : egresses.getOrDefault(k, List.of())) {
+                                events.add(new PersonLeavesVehicleEvent(arrival + 10, personId, vehicleId));
+                            }
+                            if (k + 1 < stops.size()) {
+                                int accessCount = random.nextInt(MAX_ACCESS + 1);
+                                for (int p = 0; p < accessCount; p++) {
+                                    Id<Person> personId = Id.createPersonId("person_" + personCount++);
+                                    int egressStop = k + 1 + random.nextInt(stops.size() - k - 1);
+                                    egresses.computeIfAbsent(egressStop, key -> new ArrayList<>()).add(personId);
+                                    events.add(new PersonEntersVehicleEvent(arrival + 20, personId, vehicleId));
+                                }
+                            }
+                            events.add(new VehicleDepartsAtFacilityEvent(departureTime, vehicleId, facilityId, 0));
+                        }
+                        events.add(new PersonLeavesVehicleEvent(
+                                time + stops.get(stops.size() - 1).getDepartureOffset().seconds() + 60, driverId,
+                                vehicleId));
+                    }
+                }
+            }
+            // stable sort, which keeps the order of the events of a vehicle at the same time
+            events.sort(Comparator.comparingDouble(Event::getTime));
+            return events;
+        }
+
+        /**
+         * Writes the events to a gzipped events file, each followed by an event of a type the analysis does not need.
+         *
+         * @param file   the path of the events file, ending with ".xml.gz".
+         * @param events the events to write.
+         */
+        public static void write(Path file, List<Event> events) throws IOException {
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(file)),
+                    StandardCharsets.UTF_8)) {
+                writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n<events version=\"1.0\">\n");
+                for (Event event : events) {
+                    writeEvent(writer, event.getAttributes());
+                    writeEvent(writer, Map.of("time", Double.toString(event.getTime()), "type", "left link", "link",
+                            "link_" + event.getTime(), "vehicle",
+                            event.getAttributes().getOrDefault("vehicle", "car")));
+                }
+                writer.write("</events>\n");
+            }
+        }
+
+        private static void writeEvent(Writer writer, Map<String, String> attributes) throws IOException {
+            writer.write("\t<event");
+            for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                writer.write(" " + attribute.getKey() + "=\"" + attribute.getValue() + "\"");
+            }
+            writer.write(" />\n");
+        }
+    }
+}
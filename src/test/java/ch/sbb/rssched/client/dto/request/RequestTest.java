@@ -1,10 +1,12 @@
 package ch.sbb.rssched.client.dto.request;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 
 class RequestTest {
@@ -24,7 +26,7 @@ class RequestTest {
     }
 
     @Test
-    void testBuildWithValidData() throws JsonProcessingException {
+    void testBuildWithValidData() throws IOException {
         Request request = Request.builder()
                 .addLocation("loc1")
                 .addLocation("loc2", 5)
@@ -90,6 +92,11 @@ class RequestTest {
         Assertions.assertTrue(jsonOutput.contains("route1"), "JSON should contain 'route1'.");
         Assertions.assertTrue(jsonOutput.contains("routeSegment1"), "JSON should contain 'routeSegment1'.");
         Assertions.assertTrue(jsonOutput.contains("departureSegment1"), "JSON should contain 'departureSegment1'.");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        request.writeTo(outputStream);
+        Assertions.assertEquals(jsonOutput, outputStream.toString(StandardCharsets.UTF_8),
+                "Streamed JSON should match the JSON string.");
     }
 
     @Test
@@ -1,8 +1,12 @@
 package ch.sbb.rssched.client.dto.request;
 
+import ch.sbb.rssched.client.dto.JsonCodec;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.util.List;
+
 /**
  * @author munterfi
  */
@@ -21,11 +25,106 @@ class TripMatrixTest {
         TripMatrix deadHeadTrip = builder.build();
 
         // Verify the matrix dimensions
-        Assertions.assertEquals(3, deadHeadTrip.indices().size(), "Matrix size should be 3.");
-        Assertions.assertEquals(3, deadHeadTrip.distances().size(), "Matrix size should be 3.");
-        Assertions.assertEquals(3, deadHeadTrip.durations().size(), "Matrix size should be 3.");
-        Assertions.assertEquals(3, deadHeadTrip.distances().get(0).size(), "Matrix size should be 3.");
-        Assertions.assertEquals(3, deadHeadTrip.durations().get(0).size(), "Matrix size should be 3.");
+        Assertions.assertEquals(3, deadHeadTrip.getIndices().size(), "Matrix size should be 3.");
+        Assertions.assertEquals(3, deadHeadTrip.getDistances().size(), "Matrix size should be 3.");
+        Assertions.assertEquals(3, deadHeadTrip.getDurations().size(), "Matrix size should be 3.");
+    }
+
+    @Test
+    void testBuildWithSortedIndicesAndGrowingCapacity() {
+        TripMatrix.Builder builder = new TripMatrix.Builder();
+
+        // add more locations than the initial capacity of the builder, in reverse order
+        final int n = 40;
+        for (int i = n - 1; i >= 0; i--) {
+            for (int j = n - 1; j >= 0; j--) {
+                if (i != j) {
+                    builder.addRelation(String.format("loc%02d", i), String.format("loc%02d", j), i * 100 + j,
+                            i * 1000 + j);
+                }
+            }
+        }
+
+        TripMatrix tripMatrix = builder.build();
+
+        // verify indices are sorted and values are placed at the sorted positions
+        Assertions.assertEquals(n, tripMatrix.getIndices().size());
+        Assertions.assertEquals("loc00", tripMatrix.getIndices().get(0));
+        Assertions.assertEquals(0, tripMatrix.getDurations().get(3, 3));
+        Assertions.assertEquals(305, tripMatrix.getDurations().get(3, 5));
+        Assertions.assertEquals(39005, tripMatrix.getDistances().get(39, 5));
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                Assertions.assertEquals(i == j ? 0 : i * 100 + j, tripMatrix.getDurations().get(i, j));
+                Assertions.assertEquals(i == j ? 0 : i * 1000 + j, tripMatrix.getDistances().get(i, j));
+            }
+        }
+        Assertions.assertTrue(builder.containsRelation("loc39", "loc05"));
+        Assertions.assertFalse(builder.containsRelation("loc05", "loc05"));
+    }
+
+    @Test
+    void testBuildWithReservedCapacity() {
+        // locations added in an unsorted order, with more capacity than locations
+        TripMatrix.Builder builder = new TripMatrix.Builder().ensureCapacity(40);
+        String[] ids = {"c", "a", "d", "b"};
+        for (String origin : ids) {
+            for (String destination : ids) {
+                if (!origin.equals(destination)) {
+                    builder.addRelation(origin, destination, origin.charAt(0) * 1000 + destination.charAt(0), 1);
+                }
+            }
+        }
+
+        TripMatrix tripMatrix = builder.build();
+
+        Assertions.assertEquals(List.of("a", "b", "c", "d"), tripMatrix.getIndices());
+        Assertions.assertEquals('b' * 1000 + 'd', tripMatrix.getDurations().get(1, 3));
+        Assertions.assertEquals('d' * 1000 + 'a', tripMatrix.getDurations().get(3, 0));
+    }
+
+    @Test
+    void testBuildAgainAfterAddingRelations() {
+        TripMatrix.Builder builder = new TripMatrix.Builder().addRelation("b", "a", 1, 10)
+                .addRelation("a", "b", 2, 20);
+        TripMatrix first = builder.build();
+
+        // the built matrix shares the arrays of the builder, later relations must not change it
+        builder.addRelation("a", "b", 3, 30);
+        TripMatrix second = builder.build();
+
+        Assertions.assertEquals(2, first.getDurations().get(0, 1));
+        Assertions.assertEquals(3, second.getDurations().get(0, 1));
+        Assertions.assertEquals(1, second.getDurations().get(1, 0));
+        Assertions.assertTrue(builder.containsRelation("b", "a"));
+    }
+
+    @Test
+    void testEqualsByValue() {
+        TripMatrix tripMatrix = new TripMatrix.Builder().addRelation("a", "b", 1, 10)
+                .addRelation("b", "a", 2, 20)
+                .build();
+        TripMatrix same = new TripMatrix.Builder().addRelation("b", "a", 2, 20)
+                .addRelation("a", "b", 1, 10)
+                .build();
+        TripMatrix other = new TripMatrix.Builder().addRelation("a", "b", 1, 10)
+                .addRelation("b", "a", 2, 21)
+                .build();
+
+        Assertions.assertEquals(tripMatrix, same);
+        Assertions.assertEquals(tripMatrix.hashCode(), same.hashCode());
+        Assertions.assertNotEquals(tripMatrix, other);
+        Assertions.assertEquals("[[0, 1], [2, 0]]", tripMatrix.getDurations().toString());
+    }
+
+    @Test
+    void testSerializeAsNestedArrays() throws IOException {
+        TripMatrix tripMatrix = new TripMatrix.Builder().addRelation("b", "a", 2, 20)
+                .addRelation("a", "b", 1, 10)
+                .build();
+
+        Assertions.assertEquals("{\"indices\":[\"a\",\"b\"],\"durations\":[[0,1],[2,0]],\"distances\":[[0,10],[20,0]]}",
+                JsonCodec.compactWriter().writeValueAsString(tripMatrix));
     }
 
     @Test
@@ -0,0 +1,142 @@
+package ch.sbb.rssched.client.pipeline.passenger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author munterfi
+ */
+class PassengerEntryStoreTest {
+
+    private TransitScheduleFactory factory;
+    private List<TransitRouteStop> stops;
+    private TransitLine line;
+    private TransitRoute route;
+    private TransitRoute otherRoute;
+
+    @BeforeEach
+    void setUp() {
+        factory = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getTransitSchedule().getFactory();
+        stops = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            TransitStopFacility facility = factory.createTransitStopFacility(
+                    Id.create("stop_" + i, TransitStopFacility.class), new Coord(i * 1000, 0), false);
+            stops.add(factory.createTransitRouteStop(facility, i * 60, i * 60 + 30));
+        }
+        line = factory.createTransitLine(Id.create("line", TransitLine.class));
+        route = factory.createTransitRoute(Id.create("route", TransitRoute.class), null, stops, "rail");
+        otherRoute = factory.createTransitRoute(Id.create("other", TransitRoute.class), null, stops, "rail");
+    }
+
+    @Test
+    void addEntries() {
+        PassengerEntryStore store = new PassengerEntryStore();
+        Departure departure = departure("departure");
+
+        assertEquals(0, store.add(line, route, departure, stops.get(0), stops.get(1), 0, 5, 5));
+        assertEquals(1, store.add(line, route, departure, stops.get(1), null, 5, 0, 0));
+        store.addSeats(0, 3);
+        store.addSeats(0, 1);
+
+        assertEquals(2, store.size());
+        assertSame(line, store.getTransitLine(1));
+        assertSame(route, store.getTransitRoute(1));
+        assertSame(departure, store.getDeparture(1));
+        assertSame(stops.get(1), store.getFromStop(1));
+        assertSame(stops.get(1), store.getToStop(0));
+        assertNull(store.getToStop(1));
+        assertEquals(5, store.getEgress(1));
+        assertEquals(5, store.getAccess(0));
+        assertEquals(5, store.getCount(0));
+        assertEquals(4, store.getSeats(0));
+        assertEquals(0, store.getSeats(1));
+    }
+
+    @Test
+    void addAllRemapsDictionaries() {
+        Departure first = departure("first");
+        Departure second = departure("second");
+        PassengerEntryStore store = new PassengerEntryStore();
+        store.add(line, route, first, stops.get(0), stops.get(1), 0, 1, 1);
+        PassengerEntryStore other = new PassengerEntryStore();
+        other.add(line, otherRoute, second, stops.get(2), null, 2, 0, 0);
+        other.add(line, route, first, stops.get(1), stops.get(2), 1, 2, 2);
+        other.addSeats(1, 7);
+
+        store.addAll(other);
+
+        // the departures and stops of the other store have different indices, the entries keep their objects
+        assertEquals(3, store.size());
+        assertSame(otherRoute, store.getTransitRoute(1));
+        assertSame(second, store.getDeparture(1));
+        assertSame(stops.get(2), store.getFromStop(1));
+        assertNull(store.getToStop(1));
+        assertSame(route, store.getTransitRoute(2));
+        assertSame(first, store.getDeparture(2));
+        assertSame(stops.get(1), store.getFromStop(2));
+        assertSame(stops.get(2), store.getToStop(2));
+        assertEquals(2, store.getCount(2));
+        assertEquals(7, store.getSeats(2));
+        assertArrayEquals(new int[]{0, 2}, store.getEntries(line.getId(), route.getId(), first.getId()));
+        assertArrayEquals(new int[]{1}, store.getEntries(line.getId(), otherRoute.getId(), second.getId()));
+    }
+
+    @Test
+    void getEntriesInOrderOfAddition() {
+        PassengerEntryStore store = new PassengerEntryStore();
+        List<Departure> departures = new ArrayList<>();
+        // more departures and entries than the initial capacity, interleaved by departure
+        int departureCount = 1500;
+        for (int i = 0; i < departureCount; i++) {
+            departures.add(departure("departure_" + i));
+        }
+        for (int stop = 0; stop < stops.size(); stop++) {
+            for (Departure departure : departures) {
+                store.add(line, route, departure, stops.get(stop), null, 0, 0, stop);
+            }
+        }
+
+        for (int i = 0; i < departureCount; i++) {
+            int[] entries = store.getEntries(line.getId(), route.getId(), departures.get(i).getId());
+            assertArrayEquals(new int[]{i, departureCount + i, 2 * departureCount + i}, entries);
+        }
+        assertArrayEquals(new int[0], store.getEntries(line.getId(), otherRoute.getId(), departures.get(0).getId()));
+        assertArrayEquals(new int[0],
+                store.getEntries(line.getId(), route.getId(), Id.create("unknown", Departure.class)));
+    }
+
+    @Test
+    void getEntriesAfterAdd() {
+        PassengerEntryStore store = new PassengerEntryStore();
+        Departure departure = departure("departure");
+        store.add(line, route, departure, stops.get(0), stops.get(1), 0, 1, 1);
+        assertArrayEquals(new int[]{0}, store.getEntries(line.getId(), route.getId(), departure.getId()));
+
+        // the departure index is rebuilt after the store changed
+        store.add(line, route, departure, stops.get(1), null, 1, 0, 0);
+
+        assertArrayEquals(new int[]{0, 1}, store.getEntries(line.getId(), route.getId(), departure.getId()));
+    }
+
+    private Departure departure(String id) {
+        return factory.createDeparture(Id.create(id, Departure.class), 8 * 3600);
+    }
+}
@@ -0,0 +1,161 @@
+package ch.sbb.rssched.client.pipeline.passenger;
+
+import ch.sbb.rssched.client.SyntheticTestData.TransitEvents;
+import ch.sbb.rssched.client.SyntheticTestData.TransitScenario;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author munterfi
+ */
+class ShardedEventAnalysisTest {
+    private static final int LINE_COUNT = 40;
+    private static final double SAMPLE_SIZE_FACTOR = 10;
+    private static final int SEAT_DURATION_THRESHOLD = 300;
+
+    @TempDir
+    Path directory;
+
+    private Scenario scenario;
+    private Set<Id<TransitLine>> transitLineIds;
+    private Path eventsFile;
+
+    private static List<String> rows(PassengerEntryStore entries) {
+        List<String> rows = new ArrayList<>(entries.size());
+        for (int entry = 0; entry < entries.size(); entry++) {
+            rows.add(row(entries, entry));
+        }
+        return rows;
+    }
+
+    private static String row(PassengerEntryStore entries, int entry) {
+        var toStop = entries.getToStop(entry);
+        return String.join(",", entries.getTransitLine(entry).getId().toString(),
+                entries.getTransitRoute(entry).getId().toString(), entries.getDeparture(entry).getId().toString(),
+                entries.getFromStop(entry).getStopFacility().getId().toString(),
+                toStop == null ? "" : toStop.getStopFacility().getId().toString(),
+                String.valueOf(entries.getEgress(entry)), String.valueOf(entries.getAccess(entry)),
+                String.valueOf(entries.getCount(entry)), String.valueOf(entries.getSeats(entry)));
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        scenario = TransitScenario.create(LINE_COUNT, 1);
+        transitLineIds = TransitScenario.selectLines(scenario, 0.5, 3);
+        eventsFile = directory.resolve("output_events.xml.gz");
+        TransitEvents.write(eventsFile, TransitEvents.simulate(scenario, 2));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {2, 3, 8})
+    void shardedEqualsSequential(int threads) {
+        PassengerEntryStore sequential = analyse(
+                new EventAnalysis(scenario, transitLineIds, SAMPLE_SIZE_FACTOR, SEAT_DURATION_THRESHOLD));
+        PassengerEntryStore sharded = analyse(
+                new ShardedEventAnalysis(scenario, transitLineIds, SAMPLE_SIZE_FACTOR, SEAT_DURATION_THRESHOLD,
+                        threads));
+
+        // the same entries apart from their order
+        List<String> expected = rows(sequential);
+        List<String> actual = rows(sharded);
+        assertTrue(expected.stream().anyMatch(row -> !row.endsWith(",0")), "no seated passengers");
+        assertEquals(expected.stream().sorted().toList(), actual.stream().sorted().toList());
+
+        // the entries of a departure are in the order of the stops
+        for (Id<TransitLine> lineId : transitLineIds) {
+            TransitLine line = scenario.getTransitSchedule().getTransitLines().get(lineId);
+            for (TransitRoute route : line.getRoutes().values()) {
+                for (Departure departure : route.getDepartures().values()) {
+                    assertEquals(rows(sequential, sequential.getEntries(lineId, route.getId(), departure.getId())),
+                            rows(sharded, sharded.getEntries(lineId, route.getId(), departure.getId())));
+                }
+            }
+        }
+    }
+
+    @Test
+    void mergeEntriesInShardOrder() {
+        int threads = 2;
+        PassengerEntryStore entries = analyse(
+                new ShardedEventAnalysis(scenario, transitLineIds, SAMPLE_SIZE_FACTOR, SEAT_DURATION_THRESHOLD,
+                        threads));
+
+        // the events are routed to the shards by vehicle, the shards are appended one after the other
+        int previousShard = 0;
+        for (int entry = 0; entry < entries.size(); entry++) {
+            int shard = Math.floorMod(entries.getDeparture(entry).getVehicleId().index(), threads);
+            assertTrue(shard >= previousShard, "entry " + entry + " of shard " + shard + " after shard " +
+                    previousShard);
+            previousShard = shard;
+        }
+        assertEquals(threads - 1, previousShard);
+    }
+
+    @Test
+    void failIfShardFails() {
+        TransitLine line = scenario.getTransitSchedule().getTransitLines().get(transitLineIds.iterator().next());
+        TransitRoute route = line.getRoutes().values().iterator().next();
+        Departure departure = route.getDepartures().values().iterator().next();
+        Id<Person> driverId = Id.createPersonId("driver");
+        try (ShardedEventAnalysis analysis = new ShardedEventAnalysis(scenario, transitLineIds, SAMPLE_SIZE_FACTOR,
+                SEAT_DURATION_THRESHOLD, 2)) {
+            analysis.handleEvent(new TransitDriverStartsEvent(0, driverId, departure.getVehicleId(), line.getId(),
+                    route.getId(), departure.getId()));
+            analysis.handleEvent(new PersonEntersVehicleEvent(0, driverId, departure.getVehicleId()));
+            analysis.handleEvent(new VehicleArrivesAtFacilityEvent(0, departure.getVehicleId(),
+                    route.getStops().get(0).getStopFacility().getId(), 0));
+            // a passenger leaves without entering the vehicle
+            analysis.handleEvent(new PersonLeavesVehicleEvent(10, Id.createPersonId("unknown"),
+                    departure.getVehicleId()));
+
+            IllegalStateException exception = assertThrows(IllegalStateException.class, analysis::finish);
+            assertTrue(exception.getMessage().startsWith("No access registered"), exception.getMessage());
+        }
+    }
+
+    @Test
+    void failWithoutThreads() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ShardedEventAnalysis(scenario, transitLineIds, SAMPLE_SIZE_FACTOR, SEAT_DURATION_THRESHOLD,
+                        0));
+    }
+
+    private List<String> rows(PassengerEntryStore entries, int[] indices) {
+        List<String> rows = new ArrayList<>(indices.length);
+        for (int entry : indices) {
+            rows.add(row(entries, entry));
+        }
+        return rows;
+    }
+
+    private PassengerEntryStore analyse(PassengerEventHandler eventAnalysis) {
+        try (eventAnalysis) {
+            new TransitEventsReader(transitLineIds, eventAnalysis).readFilePipelined(eventsFile.toString());
+            eventAnalysis.finish();
+            return eventAnalysis.getEntries();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package ch.sbb.rssched.client.pipeline.passenger;
+
+import ch.sbb.rssched.client.SyntheticTestData.TransitEvents;
+import ch.sbb.rssched.client.SyntheticTestData.TransitScenario;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.PersonEntersVehicleEvent;
+import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
+import org.matsim.api.core.v01.events.TransitDriverStartsEvent;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.api.experimental.events.VehicleDepartsAtFacilityEvent;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author munterfi
+ */
+class TransitEventsReaderTest {
+    private static final int LINE_COUNT = 40;
+
+    @TempDir
+    Path directory;
+
+    private Path eventsFile;
+    private List<Event> events;
+    private Set<Id<TransitLine>> transitLineIds;
+    private Map<String, Id<TransitLine>> vehicleLines;
+
+    private static Throwable rootCause(Throwable throwable) {
+        while (throwable.getCause() != null) {
+            throwable = throwable.getCause();
+        }
+        return throwable;
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Scenario scenario = TransitScenario.create(LINE_COUNT, 1);
+        events = TransitEvents.simulate(scenario, 2);
+        transitLineIds = TransitScenario.selectLines(scenario, 0.5, 3);
+        vehicleLines = new HashMap<>();
+        for (TransitLine line : scenario.getTransitSchedule().getTransitLines().values()) {
+            line.getRoutes()
+                    .values()
+                    .forEach(route -> route.getDepartures()
+                            .values()
+                            .forEach(departure -> vehicleLines.put(departure.getVehicleId().toString(),
+                                    line.getId())));
+        }
+        eventsFile = directory.resolve("output_events.xml.gz");
+        TransitEvents.write(eventsFile, events);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void readOnlyEventsOfSelectedLines(boolean pipelined) {
+        EventRecorder recorder = new EventRecorder();
+
+        read(new TransitEventsReader(transitLineIds, recorder), pipelined);
+
+        // the unrelated events and the events of vehicles on other lines are skipped, the order is kept
+        List<Map<String, String>> expected = events.stream()
+                .filter(event -> transitLineIds.contains(lineOf(event)))
+                .map(Event::getAttributes)
+                .toList();
+        assertTrue(expected.size() > 0);
+        assertTrue(expected.size() < events.size());
+        assertEquals(expected, recorder.events);
+    }
+
+    @Test
+    void failIfFileIsTruncated() throws IOException {
+        // cut the compressed stream in the middle, after several inflated blocks
+        byte[] bytes = Files.readAllBytes(eventsFile);
+        Files.write(eventsFile, Arrays.copyOf(bytes, bytes.length / 2));
+        TransitEventsReader reader = new TransitEventsReader(transitLineIds, new EventRecorder());
+
+        // the parser reads the inflater directly and reports the incomplete document
+        assertThrows(IllegalStateException.class, () -> reader.readFile(eventsFile.toString()));
+        // the pipeline passes the failure of the inflater on to the parser and the calling thread
+        UncheckedIOException exception = assertThrows(UncheckedIOException.class,
+                () -> reader.readFilePipelined(eventsFile.toString()));
+        assertTrue(rootCause(exception) instanceof EOFException, exception.toString());
+    }
+
+    @Test
+    void stopPipelineIfDispatchFails() {
+        IllegalStateException failure = new IllegalStateException("analysis failed");
+        EventRecorder recorder = new EventRecorder() {
+            @Override
+            public void handleEvent(VehicleDepartsAtFacilityEvent event) {
+                throw failure;
+            }
+        };
+        TransitEventsReader reader = new TransitEventsReader(transitLineIds, recorder);
+
+        assertEquals(failure,
+                assertThrows(IllegalStateException.class, () -> reader.readFilePipelined(eventsFile.toString())));
+    }
+
+    private void read(TransitEventsReader reader, boolean pipelined) {
+        if (pipelined) {
+            reader.readFilePipelined(eventsFile.toString());
+        } else {
+            reader.readFile(eventsFile.toString());
+        }
+    }
+
+    private Id<TransitLine> lineOf(Event event) {
+        Map<String, String> attributes = event.getAttributes();
+        return vehicleLines.get(attributes.getOrDefault("vehicle",
+                attributes.get(TransitDriverStartsEvent.ATTRIBUTE_VEHICLE_ID)));
+    }
+
+    /**
+     * Records the attributes of the dispatched events.
+     */
+    private static class EventRecorder implements PassengerEventHandler {
+        private final List<Map<String, String>> events = new ArrayList<>();
+
+        @Override
+        public void handleEvent(TransitDriverStartsEvent event) {
+            events.add(event.getAttributes());
+        }
+
+        @Override
+        public void handleEvent(VehicleArrivesAtFacilityEvent event) {
+            events.add(event.getAttributes());
+        }
+
+        @Override
+        public void handleEvent(VehicleDepartsAtFacilityEvent event) {
+            events.add(event.getAttributes());
+        }
+
+        @Override
+        public void handleEvent(PersonEntersVehicleEvent event) {
+            events.add(event.getAttributes());
+        }
+
+        @Override
+        public void handleEvent(PersonLeavesVehicleEvent event) {
+            events.add(event.getAttributes());
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        @Override
+        public PassengerEntryStore getEntries() {
+            return new PassengerEntryStore();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import ch.sbb.rssched.client.SyntheticTestData.RailNetwork;
+import ch.sbb.rssched.client.config.RsschedRequestConfig.Global.RoutingAlgorithm;
+import ch.sbb.rssched.client.pipeline.request.TrainNetworkRouter.PathResult;
+import ch.sbb.rssched.client.pipeline.utils.io.DeadHeadTripCache;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author munterfi
+ */
+class DeadHeadTripMatrixBuilderTest {
+    private static final int FACILITY_COUNT = 8;
+
+    @TempDir
+    Path cacheDirectory;
+
+    private static Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> build(RoutingGraph graph,
+            int threads, DeadHeadTripCache cache, List<TransitStopFacility> facilities) {
+        return new DeadHeadTripMatrixBuilder(graph, RoutingAlgorithm.DIJKSTRA, RailNetwork.SPEED_LIMIT,
+                RailNetwork.BEELINE_FACTOR, threads, cache).buildMatrix(facilities);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 3})
+    void matrixEqualsRoutedRelations(int threads) {
+        RailNetwork network = RailNetwork.grid(8, 11, 0.1, false, 1);
+        List<TransitStopFacility> facilities = network.facilities(FACILITY_COUNT, 12);
+        RoutingGraph graph = network.graph();
+        TrainNetworkRouter router = new TrainNetworkRouter(graph, RailNetwork.SPEED_LIMIT,
+                RailNetwork.BEELINE_FACTOR);
+
+        Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> matrix = build(graph, threads, null,
+                facilities);
+
+        // all relations in both directions, in location order
+        assertEquals(facilities, List.copyOf(matrix.keySet()));
+        for (TransitStopFacility origin : facilities) {
+            List<TransitStopFacility> destinations = facilities.stream()
+                    .filter(destination -> destination != origin)
+                    .toList();
+            assertEquals(destinations, List.copyOf(matrix.get(origin).keySet()));
+            for (TransitStopFacility destination : destinations) {
+                assertEquals(router.calculate(origin, destination), matrix.get(origin).get(destination));
+            }
+        }
+    }
+
+    @Test
+    void routeOnlyRelationsMissingInCache() {
+        RailNetwork network = RailNetwork.grid(8, 11, 0.1, false, 1);
+        List<TransitStopFacility> facilities = network.facilities(FACILITY_COUNT, 12);
+        RoutingGraph graph = network.graph();
+        Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> routed = build(graph, 1, null, facilities);
+        DeadHeadTripCache cache = DeadHeadTripCache.load(cacheDirectory.toString(), network.getNetwork(),
+                Set.of("rail"), RailNetwork.SPEED_LIMIT, RailNetwork.BEELINE_FACTOR);
+        // a cached result differing from the routed one shows that the relation is not routed again
+        PathResult cached = new PathResult(1, 2);
+        TransitStopFacility origin = facilities.get(0);
+        TransitStopFacility destination = facilities.get(1);
+        cache.put(origin, destination, cached);
+
+        Map<TransitStopFacility, Map<TransitStopFacility, PathResult>> matrix = build(graph, 3, cache, facilities);
+
+        assertEquals(cached, matrix.get(origin).get(destination));
+        matrix.get(origin).put(destination, routed.get(origin).get(destination));
+        assertEquals(routed, matrix);
+        // the routed relations are added to the cache and saved
+        assertEquals(FACILITY_COUNT * (FACILITY_COUNT - 1), cache.size());
+        assertTrue(Files.exists(Paths.get(cache.getFilePath())));
+    }
+}
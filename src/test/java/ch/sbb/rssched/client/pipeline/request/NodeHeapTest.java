@@ -0,0 +1,98 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author munterfi
+ */
+class NodeHeapTest {
+
+    @Test
+    void pollInKeyOrder() {
+        NodeHeap heap = new NodeHeap(5);
+        heap.offer(0, 4);
+        heap.offer(1, 2);
+        heap.offer(2, 5);
+        heap.offer(3, 1);
+        heap.offer(4, 3);
+
+        assertEquals(1, heap.peekKey());
+        int[] polled = new int[5];
+        for (int i = 0; i < polled.length; i++) {
+            polled[i] = heap.poll();
+        }
+        assertArrayEquals(new int[]{3, 1, 4, 0, 2}, polled);
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    void decreaseKey() {
+        NodeHeap heap = new NodeHeap(3);
+        heap.offer(0, 10);
+        heap.offer(1, 5);
+        heap.offer(2, 7);
+
+        // a smaller key moves the node up, a larger key is ignored
+        heap.offer(0, 1);
+        heap.offer(1, 20);
+
+        assertEquals(1, heap.peekKey());
+        assertEquals(0, heap.poll());
+        assertEquals(5, heap.peekKey());
+        assertEquals(1, heap.poll());
+        assertEquals(2, heap.poll());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test
+    void offerAgainAfterPollAndClear() {
+        NodeHeap heap = new NodeHeap(3);
+        heap.offer(0, 1);
+        heap.offer(1, 2);
+        assertEquals(0, heap.poll());
+
+        // a polled node is inserted again, even with a larger key
+        heap.offer(0, 3);
+        assertEquals(1, heap.poll());
+        assertEquals(0, heap.poll());
+
+        heap.offer(2, 1);
+        heap.clear();
+        assertTrue(heap.isEmpty());
+        heap.offer(2, 5);
+        assertEquals(5, heap.peekKey());
+    }
+
+    @Test
+    void pollInKeyOrderWithRandomDecreases() {
+        Random random = new Random(1);
+        int nodeCount = 200;
+        NodeHeap heap = new NodeHeap(nodeCount);
+        double[] keys = new double[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            keys[node] = random.nextDouble() * 1000;
+            heap.offer(node, keys[node]);
+        }
+        for (int i = 0; i < 500; i++) {
+            int node = random.nextInt(nodeCount);
+            double key = random.nextDouble() * 1000;
+            heap.offer(node, key);
+            keys[node] = Math.min(keys[node], key);
+        }
+
+        double[] expected = keys.clone();
+        Arrays.sort(expected);
+        for (double key : expected) {
+            assertEquals(key, heap.peekKey());
+            assertEquals(key, keys[heap.poll()]);
+        }
+        assertTrue(heap.isEmpty());
+    }
+}
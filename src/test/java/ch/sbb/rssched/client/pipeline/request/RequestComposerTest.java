@@ -0,0 +1,107 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import ch.sbb.rssched.client.pipeline.passenger.PassengerEntryStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * @author munterfi
+ */
+class RequestComposerTest {
+
+    private static final String[] STOPS = {"A", "B", "C", "D", "E"};
+
+    private TransitLine line;
+    private TransitRoute route;
+    private Departure departure;
+    private List<TransitRouteStop> stops;
+    private PassengerEntryStore passengers;
+
+    @BeforeEach
+    void setUp() {
+        TransitScheduleFactory factory = ScenarioUtils.createScenario(ConfigUtils.createConfig())
+                .getTransitSchedule()
+                .getFactory();
+        stops = new ArrayList<>();
+        for (int i = 0; i < STOPS.length; i++) {
+            TransitStopFacility facility = factory.createTransitStopFacility(
+                    Id.create(STOPS[i], TransitStopFacility.class), new Coord(i * 1000, 0), false);
+            stops.add(factory.createTransitRouteStop(facility, i * 60, i * 60 + 30));
+        }
+        line = factory.createTransitLine(Id.create("line", TransitLine.class));
+        route = factory.createTransitRoute(Id.create("route", TransitRoute.class), null, stops, "rail");
+        departure = factory.createDeparture(Id.create("departure", Departure.class), 8 * 3600);
+        passengers = new PassengerEntryStore();
+    }
+
+    @Test
+    void extractPassengersOfCompleteStopPattern() {
+        addEntry(0, 1, 4);
+        addEntry(1, 2, 6);
+        addEntry(2, 3, 3);
+        addEntry(3, 4, 2);
+        addEntry(4, -1, 0);
+
+        RequestComposer.PassengerResult[] results = extract(segment(0, 2), segment(2, 3), segment(3, 4));
+
+        assertArrayEquals(new RequestComposer.PassengerResult[]{new RequestComposer.PassengerResult(6, 0),
+                new RequestComposer.PassengerResult(3, 0), new RequestComposer.PassengerResult(2, 0)}, results);
+    }
+
+    @Test
+    void extractPassengersWithSkippedDestination() {
+        // the departure does not serve stop C, which is the destination of the first segment
+        addEntry(0, 1, 4);
+        addEntry(1, 3, 6);
+        addEntry(3, 4, 2);
+        addEntry(4, -1, 0);
+
+        RequestComposer.PassengerResult[] results = extract(segment(0, 2), segment(2, 3), segment(3, 4));
+
+        // the first segment counts up to the last entry, the second has no origin, the third is not affected
+        assertArrayEquals(new RequestComposer.PassengerResult[]{new RequestComposer.PassengerResult(6, 0),
+                new RequestComposer.PassengerResult(0, 0), new RequestComposer.PassengerResult(2, 0)}, results);
+    }
+
+    @Test
+    void extractPassengersWithMissingStop() {
+        // the departure does not serve stop B, inside the first segment
+        addEntry(0, 2, 5);
+        addEntry(2, 3, 3);
+        addEntry(3, 4, 7);
+        addEntry(4, -1, 0);
+
+        RequestComposer.PassengerResult[] results = extract(segment(0, 2), segment(2, 3), segment(3, 4));
+
+        assertArrayEquals(new RequestComposer.PassengerResult[]{new RequestComposer.PassengerResult(5, 0),
+                new RequestComposer.PassengerResult(3, 0), new RequestComposer.PassengerResult(7, 0)}, results);
+    }
+
+    private void addEntry(int from, int to, int count) {
+        passengers.add(line, route, departure, stops.get(from), to < 0 ? null : stops.get(to), 0, 0, count);
+    }
+
+    private RequestComposer.Segment segment(int origin, int destination) {
+        return new RequestComposer.Segment(stops.get(origin), stops.get(destination));
+    }
+
+    private RequestComposer.PassengerResult[] extract(RequestComposer.Segment... segments) {
+        return RequestComposer.extractPassengers(passengers,
+                passengers.getEntries(line.getId(), route.getId(), departure.getId()), List.of(segments));
+    }
+}
@@ -0,0 +1,119 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import ch.sbb.rssched.client.SyntheticTestData.RailNetwork;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author munterfi
+ */
+class RoutingGraphTest {
+
+    private static int indexOf(RoutingGraph graph, String nodeId) {
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            if (graph.nodeId(node).toString().equals(nodeId)) {
+                return node;
+            }
+        }
+        throw new IllegalArgumentException(nodeId);
+    }
+
+    /**
+     * @return the cost of the edges leaving the node, by the id of their head node.
+     */
+    private static Map<String, Double> outgoingCosts(RoutingGraph graph, String nodeId) {
+        Map<String, Double> costs = new HashMap<>();
+        int node = indexOf(graph, nodeId);
+        for (int edge = graph.firstEdge(node); edge < graph.lastEdge(node); edge++) {
+            costs.put(graph.nodeId(graph.head(edge)).toString(), graph.cost(edge));
+        }
+        return costs;
+    }
+
+    @Test
+    void buildCompressedSparseRows() {
+        RailNetwork network = new RailNetwork().node("a", 0, 0)
+                .node("b", 1000, 0)
+                .node("c", 0, 600)
+                .node("d", 5000, 5000)
+                .link("ab", "a", "b", 1000, 20)
+                .link("ac", "a", "c", 600, 50)
+                .link("bc", "b", "c", 300, 10)
+                .link("ca", "c", "a", 600, 50);
+
+        RoutingGraph graph = network.graph();
+
+        assertEquals(4, graph.getNodeCount());
+        assertEquals(4, graph.getEdgeCount());
+        // the free speed is capped by the speed limit
+        assertEquals(Map.of("b", 50.0, "c", 20.0), outgoingCosts(graph, "a"));
+        assertEquals(Map.of("c", 30.0), outgoingCosts(graph, "b"));
+        assertEquals(Map.of("a", 20.0), outgoingCosts(graph, "c"));
+        assertEquals(Map.of(), outgoingCosts(graph, "d"));
+        int b = indexOf(graph, "b");
+        assertEquals(300, graph.length(graph.firstEdge(b)));
+        assertEquals(5000, graph.x(indexOf(graph, "d")));
+        assertEquals(b, graph.linkFromNode(Id.createLinkId("bc")));
+        assertEquals(indexOf(graph, "c"), graph.linkToNode(Id.createLinkId("bc")));
+        assertThrows(IllegalArgumentException.class, () -> graph.linkFromNode(Id.createLinkId("unknown")));
+    }
+
+    @Test
+    void contractChainsKeepsProtectedLinks() {
+        RailNetwork network = new RailNetwork().node("a", 0, 0)
+                .node("b", 1000, 0)
+                .node("c", 2000, 0)
+                .node("d", 3000, 0)
+                .node("e", 4000, 0)
+                .node("f", 5000, 0)
+                .twoWayLink("ab", "a", "b", 1000, 20)
+                .twoWayLink("bc", "b", "c", 600, 30)
+                .twoWayLink("cd", "c", "d", 900, 30)
+                .twoWayLink("de", "d", "e", 900, 30)
+                .twoWayLink("ef", "e", "f", 1500, 50);
+
+        RoutingGraph graph = network.graph().contractChains(List.of(Id.createLinkId("cd")));
+
+        // b and e are contracted, the protected link keeps its end nodes
+        assertEquals(4, graph.getNodeCount());
+        assertEquals(6, graph.getEdgeCount());
+        assertEquals(Map.of("c", 70.0), outgoingCosts(graph, "a"));
+        assertEquals(Map.of("a", 70.0, "d", 30.0), outgoingCosts(graph, "c"));
+        assertEquals(Map.of("c", 30.0, "f", 80.0), outgoingCosts(graph, "d"));
+        assertEquals(Map.of("d", 80.0), outgoingCosts(graph, "f"));
+        int a = indexOf(graph, "a");
+        assertEquals(1600, graph.length(graph.firstEdge(a)));
+        assertEquals(indexOf(graph, "c"), graph.linkFromNode(Id.createLinkId("cd")));
+        assertEquals(indexOf(graph, "d"), graph.linkToNode(Id.createLinkId("cd")));
+        assertThrows(IllegalArgumentException.class, () -> graph.linkFromNode(Id.createLinkId("ab")));
+    }
+
+    @Test
+    void contractChainsPreservesLeastCosts() {
+        RailNetwork network = RailNetwork.grid(6, 3, 0.2, false, 2);
+        List<TransitStopFacility> facilities = network.facilities(15, 4);
+        RoutingGraph graph = network.graph();
+
+        RoutingGraph contracted = graph.contractChains(
+                facilities.stream().map(TransitStopFacility::getLinkId).toList());
+
+        assertTrue(contracted.getNodeCount() < graph.getNodeCount());
+        TrainNetworkRouter router = new TrainNetworkRouter(graph, RailNetwork.SPEED_LIMIT,
+                RailNetwork.BEELINE_FACTOR);
+        TrainNetworkRouter contractedRouter = new TrainNetworkRouter(contracted, RailNetwork.SPEED_LIMIT,
+                RailNetwork.BEELINE_FACTOR);
+        for (TransitStopFacility from : facilities) {
+            assertEquals(router.calculate(from, facilities), contractedRouter.calculate(from, facilities),
+                    from.getId().toString());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import ch.sbb.rssched.client.IntegrationTestData;
+import ch.sbb.rssched.client.IntegrationTestData.MatsimRun;
+import ch.sbb.rssched.client.SyntheticTestData.RailNetwork;
+import ch.sbb.rssched.client.config.RsschedRequestConfig.Global.RoutingAlgorithm;
+import ch.sbb.rssched.client.pipeline.utils.io.ScenarioLoader;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the run times of the routing algorithms for sparse point queries and for the full matrix, on a synthetic
+ * grid and on the rail network of the integration test, which is downloaded if missing.
+ * <p>
+ * Not part of the default test run, execute it explicitly with {@code mvn test -Dtest=TrainNetworkRouterBenchmark}.
+ *
+ * @author munterfi
+ */
+class TrainNetworkRouterBenchmark {
+    private static final int GRID_SIZE = 60;
+    private static final int CHAIN_NODES = 3;
+    private static final int FACILITY_COUNT = 200;
+    private static final int POINT_QUERY_COUNT = 2000;
+    private static final int ROUNDS = 5;
+    private static final String ALLOWED_MODE = "pt";
+
+    @Test
+    void compareAlgorithms() {
+        RailNetwork network = RailNetwork.grid(GRID_SIZE, 1, 0.1, false, CHAIN_NODES);
+        List<TransitStopFacility> facilities = network.facilities(FACILITY_COUNT, 2);
+        compare(network.graph().contractChains(facilities.stream().map(TransitStopFacility::getLinkId).toList()),
+                facilities);
+    }
+
+    @Test
+    void compareAlgorithmsOnIntegrationTestNetwork() throws IOException {
+        new IntegrationTestData(false).setup();
+        Scenario scenario = new ScenarioLoader(MatsimRun.ID, MatsimRun.INPUT_DIRECTORY).load(true);
+        // keep the links of the allowed mode, as the network mask of the scenario pipeline
+        Network network = scenario.getNetwork();
+        List<Id<Link>> removedLinkIds = network.getLinks()
+                .values()
+                .stream()
+                .filter(link -> !link.getAllowedModes().contains(ALLOWED_MODE))
+                .map(Link::getId)
+                .toList();
+        removedLinkIds.forEach(network::removeLink);
+        List<TransitStopFacility> facilities = scenario.getTransitSchedule()
+                .getFacilities()
+                .values()
+                .stream()
+                .filter(facility -> network.getLinks().containsKey(facility.getLinkId()))
+                .toList();
+        compare(RoutingGraph.of(network, RailNetwork.SPEED_LIMIT)
+                .contractChains(facilities.stream().map(TransitStopFacility::getLinkId).toList()), facilities);
+    }
+
+    private static void compare(RoutingGraph graph, List<TransitStopFacility> facilities) {
+        Random random = new Random(3);
+        int[][] queries = new int[POINT_QUERY_COUNT][];
+        for (int i = 0; i < POINT_QUERY_COUNT; i++) {
+            queries[i] = new int[]{random.nextInt(facilities.size()), random.nextInt(facilities.size())};
+        }
+        System.out.printf("Routing graph with %d nodes and %d edges, %d facilities%n", graph.getNodeCount(),
+                graph.getEdgeCount(), facilities.size());
+
+        TrainNetworkRouter dijkstra = TrainNetworkRouter.factory(graph, RoutingAlgorithm.DIJKSTRA,
+                RailNetwork.SPEED_LIMIT, RailNetwork.BEELINE_FACTOR).get();
+        for (RoutingAlgorithm algorithm : RoutingAlgorithm.values()) {
+            long start = System.nanoTime();
+            TrainNetworkRouter router = TrainNetworkRouter.factory(graph, algorithm, RailNetwork.SPEED_LIMIT,
+                    RailNetwork.BEELINE_FACTOR).get();
+            double preprocessing = (System.nanoTime() - start) / 1e6;
+
+            double pointQueries = Double.POSITIVE_INFINITY;
+            double matrix = Double.POSITIVE_INFINITY;
+            for (int round = 0; round < ROUNDS; round++) {
+                start = System.nanoTime();
+                for (int[] query : queries) {
+                    router.calculate(facilities.get(query[0]), facilities.get(query[1]));
+                }
+                pointQueries = Math.min(pointQueries, (System.nanoTime() - start) / 1e6);
+
+                start = System.nanoTime();
+                for (TransitStopFacility from : facilities) {
+                    router.calculate(from, facilities);
+                }
+                matrix = Math.min(matrix, (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("%-16s preprocessing: %8.1f ms, %d point queries: %8.1f ms, full matrix: %8.1f ms%n",
+                    algorithm, preprocessing, POINT_QUERY_COUNT, pointQueries, matrix);
+
+            for (int[] query : queries) {
+                TransitStopFacility from = facilities.get(query[0]);
+                TransitStopFacility to = facilities.get(query[1]);
+                assertEquals(dijkstra.calculate(from, to), router.calculate(from, to));
+            }
+            Map<TransitStopFacility, TrainNetworkRouter.PathResult> results = router.calculate(facilities.get(0),
+                    facilities);
+            assertEquals(dijkstra.calculate(facilities.get(0), facilities), results);
+        }
+    }
+}
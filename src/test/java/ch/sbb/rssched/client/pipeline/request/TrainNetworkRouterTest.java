@@ -0,0 +1,111 @@
+package ch.sbb.rssched.client.pipeline.request;
+
+import ch.sbb.rssched.client.SyntheticTestData.RailNetwork;
+import ch.sbb.rssched.client.config.RsschedRequestConfig.Global.RoutingAlgorithm;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author munterfi
+ */
+class TrainNetworkRouterTest {
+
+    @Test
+    void matrixEqualsPointToPoint() {
+        RailNetwork network = RailNetwork.grid(12, 1, 0.2, false);
+        List<TransitStopFacility> facilities = network.facilities(20, 2);
+        TrainNetworkRouter router = new TrainNetworkRouter(network.graph(), RailNetwork.SPEED_LIMIT,
+                RailNetwork.BEELINE_FACTOR);
+
+        for (TransitStopFacility from : facilities) {
+            Map<TransitStopFacility, TrainNetworkRouter.PathResult> results = router.calculate(from, facilities);
+            assertEquals(facilities.size() - 1, results.size());
+            for (TransitStopFacility to : facilities) {
+                if (to != from) {
+                    assertEquals(router.calculate(from, to), results.get(to), from.getId() + " -> " + to.getId());
+                }
+            }
+        }
+    }
+
+    @Test
+    void matrixSettlesTargetsBeforeStopping() {
+        // the target is reached first over the expensive direct link, the cheaper path over c is found later
+        RailNetwork network = new RailNetwork().node("a", 0, 0)
+                .node("b", 1000, 0)
+                .node("c", 500, 100)
+                .node("d", 2000, 0)
+                .link("start", "a", "a", 10, 10)
+                .link("direct", "a", "b", 3000, 10)
+                .link("ac", "a", "c", 500, 10)
+                .link("cb", "c", "b", 500, 10)
+                .link("target", "b", "b", 10, 10)
+                .link("bd", "b", "d", 1000, 10)
+                .link("far", "d", "d", 10, 10);
+        TransitStopFacility start = network.facility("start", "start");
+        TransitStopFacility target = network.facility("target", "target");
+        TransitStopFacility sameLink = network.facility("same", "target");
+        TransitStopFacility far = network.facility("far", "far");
+        TrainNetworkRouter router = new TrainNetworkRouter(network.graph(), RailNetwork.SPEED_LIMIT,
+                RailNetwork.BEELINE_FACTOR);
+
+        Map<TransitStopFacility, TrainNetworkRouter.PathResult> results = router.calculate(start,
+                List.of(start, target, sameLink, far));
+
+        assertEquals(List.of(target, sameLink, far), List.copyOf(results.keySet()));
+        assertEquals(new TrainNetworkRouter.PathResult(100, 1000), results.get(target));
+        assertEquals(new TrainNetworkRouter.PathResult(100, 1000), results.get(sameLink));
+        assertEquals(new TrainNetworkRouter.PathResult(200, 2000), results.get(far));
+    }
+
+    @Test
+    void matrixEstimatesUnreachableTargetsByBeeline() {
+        RailNetwork network = new RailNetwork().node("a", 0, 0)
+                .node("b", 3000, 4000)
+                .link("start", "a", "a", 10, 10)
+                .link("island", "b", "b", 10, 10);
+        TransitStopFacility start = network.facility("start", "start");
+        TransitStopFacility island = network.facility("island", "island");
+        TrainNetworkRouter router = new TrainNetworkRouter(network.graph(), RailNetwork.SPEED_LIMIT,
+                RailNetwork.BEELINE_FACTOR);
+
+        // beeline distance of 5000 m times the factor, at the speed limit
+        assertEquals(new TrainNetworkRouter.PathResult(250, 7500),
+                router.calculate(start, List.of(island)).get(island));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = RoutingAlgorithm.class, names = {"ASTAR_LANDMARKS", "BIDIRECTIONAL"})
+    void algorithmEqualsDijkstra(RoutingAlgorithm algorithm) {
+        // one-way links and an island, which is not reachable from the grid
+        RailNetwork network = RailNetwork.grid(10, 5, 0.3, false)
+                .node("island", 20000, 20000)
+                .link("island", "island", "island", 10, 10);
+        List<TransitStopFacility> facilities = new ArrayList<>(network.facilities(20, 6));
+        facilities.add(network.facility("island", "island"));
+        RoutingGraph graph = network.graph();
+        TrainNetworkRouter dijkstra = TrainNetworkRouter.factory(graph, RoutingAlgorithm.DIJKSTRA,
+                RailNetwork.SPEED_LIMIT, RailNetwork.BEELINE_FACTOR).get();
+        TrainNetworkRouter router = TrainNetworkRouter.factory(graph, algorithm, RailNetwork.SPEED_LIMIT,
+                RailNetwork.BEELINE_FACTOR).get();
+
+        for (TransitStopFacility from : facilities) {
+            for (TransitStopFacility to : facilities) {
+                assertEquals(dijkstra.calculate(from, to), router.calculate(from, to),
+                        from.getId() + " -> " + to.getId());
+            }
+            // the few destinations are routed by point searches, the full matrix by growing the least-cost tree
+            List<TransitStopFacility> few = facilities.subList(0, 4);
+            assertEquals(dijkstra.calculate(from, few), router.calculate(from, few));
+            assertEquals(dijkstra.calculate(from, facilities), router.calculate(from, facilities));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package ch.sbb.rssched.client.pipeline.response;
+
+import ch.sbb.rssched.client.dto.JsonCodec;
+import ch.sbb.rssched.client.dto.WireFormat;
+import ch.sbb.rssched.client.dto.request.Request;
+import ch.sbb.rssched.client.dto.response.Response;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Round-trips the request and response through a local stub solver in all wire formats.
+ */
+class RequestSenderTest {
+
+    private JsonNode requestTree;
+    private Response expectedResponse;
+    private HttpServer server;
+    private final List<String> receivedContentTypes = new CopyOnWriteArrayList<>();
+    private final List<JsonNode> receivedRequests = new CopyOnWriteArrayList<>();
+    private volatile int rejectStatusCode;
+    private volatile int errorStatusCode;
+    private volatile String responseContentType;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        requestTree = JsonCodec.reader(JsonNode.class)
+                .readValue(Files.readAllBytes(Paths.get("src/test/resources/request_v6.json")));
+        expectedResponse = Response.fromJson(
+                new String(Files.readAllBytes(Paths.get("src/test/resources/response_v6.json"))));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/solve", this::solve);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"JSON, false", "JSON, true", "SMILE, false", "SMILE, true", "CBOR, false", "CBOR, true"})
+    void roundTrip(WireFormat format, boolean compress) throws IOException {
+        ResponsePipe pipe = send(format, compress);
+
+        assertEquals(List.of(format.getMediaType()), receivedContentTypes);
+        assertEquals(List.of(requestTree), receivedRequests);
+        assertEquals(expectedResponse, pipe.getResponse());
+        // only a JSON response is kept raw, for the response writer
+        if (format == WireFormat.JSON) {
+            assertEquals(expectedResponse, Response.fromJson(Files.readString(pipe.getRawResponseFile())));
+        } else {
+            assertNull(pipe.getRawResponseFile());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {400, 415})
+    void fallbackToJson(int statusCode) {
+        rejectStatusCode = statusCode;
+
+        ResponsePipe pipe = send(WireFormat.SMILE, true);
+
+        assertEquals(List.of(WireFormat.SMILE.getMediaType(), WireFormat.JSON.getMediaType()), receivedContentTypes);
+        assertEquals(List.of(requestTree), receivedRequests);
+        assertEquals(expectedResponse, pipe.getResponse());
+    }
+
+    @Test
+    void failOnErrorStatus() {
+        errorStatusCode = 500;
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> send(WireFormat.SMILE, true));
+
+        assertTrue(exception.getMessage().contains("500"), exception.getMessage());
+        // a server error is not answered by the fallback to JSON
+        assertEquals(List.of(WireFormat.SMILE.getMediaType()), receivedContentTypes);
+    }
+
+    @Test
+    void failWithoutSendingIfSerializationFails() {
+        IOException failure = new IOException("serialization failed");
+        ResponsePipe pipe = new ResponsePipe("test", new FailingRequest(failure));
+        RequestSender sender = new RequestSender("http://localhost", server.getAddress().getPort(), WireFormat.SMILE,
+                true);
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> sender.apply(pipe));
+
+        assertSame(failure, exception.getCause());
+        assertEquals(List.of(), receivedContentTypes);
+    }
+
+    @Test
+    void unknownResponseContentTypeIsParsedAsJson() throws IOException {
+        responseContentType = "text/plain; charset=utf-8";
+
+        ResponsePipe pipe = send(WireFormat.JSON, false);
+
+        assertEquals(expectedResponse, pipe.getResponse());
+        assertEquals(expectedResponse, Response.fromJson(Files.readString(pipe.getRawResponseFile())));
+    }
+
+    private ResponsePipe send(WireFormat format, boolean compress) {
+        ResponsePipe pipe = new ResponsePipe("test", new TreeRequest(requestTree));
+        new RequestSender("http://localhost", server.getAddress().getPort(), format, compress).apply(pipe);
+        return pipe;
+    }
+
+    private void solve(HttpExchange exchange) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        receivedContentTypes.add(contentType);
+        WireFormat requestFormat = WireFormat.fromMediaType(contentType);
+        boolean compressed = "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+        if (errorStatusCode != 0) {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(errorStatusCode, -1);
+            exchange.close();
+            return;
+        }
+        // a scheduler accepting only uncompressed JSON rejects other requests
+        if (rejectStatusCode != 0 && (requestFormat != WireFormat.JSON || compressed)) {
+            exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(rejectStatusCode, -1);
+            exchange.close();
+            return;
+        }
+        try (InputStream inputStream = compressed ? new GZIPInputStream(
+                exchange.getRequestBody()) : exchange.getRequestBody()) {
+            receivedRequests.add(requestFormat.reader(JsonNode.class).readValue(inputStream));
+        }
+        // answer in the preferred format of the client, compressed if accepted
+        WireFormat responseFormat = WireFormat.fromMediaType(
+                exchange.getRequestHeaders().getFirst("Accept").split(",")[0]);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new GZIPOutputStream(body)) {
+            responseFormat.writer().writeValue(outputStream, expectedResponse);
+        }
+        exchange.getResponseHeaders()
+                .add("Content-Type", responseContentType != null ? responseContentType : responseFormat.getMediaType());
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(200, body.size());
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            body.writeTo(outputStream);
+        }
+    }
+
+    /**
+     * Request writing a fixed JSON tree, independent of the request builder.
+     */
+    private record TreeRequest(JsonNode tree) implements Request {
+
+        @Override
+        public String toJSON() throws JsonProcessingException {
+            return JsonCodec.prettyWriter().writeValueAsString(tree);
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream, boolean pretty) throws IOException {
+            (pretty ? JsonCodec.prettyWriter() : JsonCodec.compactWriter()).writeValue(outputStream, tree);
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream, WireFormat format) throws IOException {
+            format.writer().writeValue(outputStream, tree);
+        }
+    }
+
+    /**
+     * Request failing to serialize.
+     */
+    private record FailingRequest(IOException failure) implements Request {
+
+        @Override
+        public String toJSON() {
+            throw new IllegalStateException(failure);
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream, boolean pretty) throws IOException {
+            throw failure;
+        }
+
+        @Override
+        public void writeTo(OutputStream outputStream, WireFormat format) throws IOException {
+            throw failure;
+        }
+    }
+}
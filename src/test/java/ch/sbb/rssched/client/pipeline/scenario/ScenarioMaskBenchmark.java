@@ -0,0 +1,49 @@
+package ch.sbb.rssched.client.pipeline.scenario;
+
+import ch.sbb.rssched.client.SyntheticTestData.TransitScenario;
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures the run times of the id-indexed masks of the transit schedule and vehicles on a large scenario.
+ * <p>
+ * Not part of the default test run, execute it explicitly with {@code mvn test -Dtest=ScenarioMaskBenchmark}.
+ *
+ * @author munterfi
+ */
+class ScenarioMaskBenchmark {
+    private static final int LINE_COUNT = 4000;
+    private static final double SELECTED_SHARE = 0.5;
+    private static final int ROUNDS = 3;
+    private static final Set<Id<TransitStopFacility>> FACILITIES_TO_KEEP = Set.of(TransitScenario.DEPOT);
+
+    @Test
+    void measureMasks() {
+        double scheduleMask = Double.POSITIVE_INFINITY;
+        double vehicleMask = Double.POSITIVE_INFINITY;
+        for (int round = 0; round < ROUNDS; round++) {
+            Scenario scenario = TransitScenario.create(LINE_COUNT, round);
+            Set<Id<TransitLine>> lineIds = TransitScenario.selectLines(scenario, SELECTED_SHARE, round);
+            ScenarioPipe pipe = TransitScheduleMaskTest.pipe(scenario, lineIds);
+
+            long start = System.nanoTime();
+            new TransitScheduleMask(FACILITIES_TO_KEEP).apply(pipe);
+            scheduleMask = Math.min(scheduleMask, (System.nanoTime() - start) / 1e6);
+
+            start = System.nanoTime();
+            new TransitVehicleMask().apply(pipe);
+            vehicleMask = Math.min(vehicleMask, (System.nanoTime() - start) / 1e6);
+
+            assertEquals(lineIds, scenario.getTransitSchedule().getTransitLines().keySet());
+        }
+        System.out.printf("%d lines, %.0f%% selected: schedule mask: %8.1f ms, vehicle mask: %8.1f ms%n",
+                LINE_COUNT, SELECTED_SHARE * 100, scheduleMask, vehicleMask);
+    }
+}
@@ -0,0 +1,77 @@
+package ch.sbb.rssched.client.pipeline.scenario;
+
+import ch.sbb.rssched.client.SyntheticTestData.TransitScenario;
+import ch.sbb.rssched.client.config.selection.TransitLineSelection;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author munterfi
+ */
+class TransitScheduleMaskTest {
+    private static final Set<Id<TransitStopFacility>> FACILITIES_TO_KEEP = Set.of(TransitScenario.DEPOT);
+
+    static ScenarioPipe pipe(Scenario scenario, Set<Id<TransitLine>> lineIds) {
+        ScenarioPipe pipe = new ScenarioPipe("test", scenario);
+        pipe.selection = new TransitLineSelection();
+        for (Id<TransitLine> lineId : lineIds) {
+            pipe.selection.add(TransitLineSelection.NO_GROUP, lineId,
+                    scenario.getTransitSchedule().getTransitLines().get(lineId).getRoutes().keySet());
+        }
+        return pipe;
+    }
+
+    /**
+     * @return the facilities served by the selected lines and the facilities to keep.
+     */
+    private static Set<Id<TransitStopFacility>> servedFacilities(Scenario scenario, Set<Id<TransitLine>> lineIds) {
+        Set<Id<TransitStopFacility>> facilityIds = new HashSet<>(FACILITIES_TO_KEEP);
+        for (Id<TransitLine> lineId : lineIds) {
+            TransitLine line = scenario.getTransitSchedule().getTransitLines().get(lineId);
+            for (TransitRoute route : line.getRoutes().values()) {
+                for (TransitRouteStop stop : route.getStops()) {
+                    facilityIds.add(stop.getStopFacility().getId());
+                }
+            }
+        }
+        return facilityIds;
+    }
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0.1, 0.5, 1})
+    void keepSelectedLinesAndServedFacilities(double share) {
+        Scenario scenario = TransitScenario.create(40, 1);
+        Set<Id<TransitLine>> lineIds = TransitScenario.selectLines(scenario, share, 2);
+        Set<Id<TransitStopFacility>> expectedFacilityIds = servedFacilities(scenario, lineIds);
+
+        new TransitScheduleMask(FACILITIES_TO_KEEP).apply(pipe(scenario, lineIds));
+
+        TransitSchedule schedule = scenario.getTransitSchedule();
+        assertEquals(lineIds, schedule.getTransitLines().keySet());
+        assertEquals(expectedFacilityIds, schedule.getFacilities().keySet());
+    }
+
+    @Test
+    void keepDepotWithoutSelectedLines() {
+        Scenario scenario = TransitScenario.create(10, 3);
+
+        new TransitScheduleMask(FACILITIES_TO_KEEP).apply(pipe(scenario, Set.of()));
+
+        assertTrue(scenario.getTransitSchedule().getTransitLines().isEmpty());
+        assertEquals(FACILITIES_TO_KEEP, scenario.getTransitSchedule().getFacilities().keySet());
+    }
+}
@@ -0,0 +1,53 @@
+package ch.sbb.rssched.client.pipeline.scenario;
+
+import ch.sbb.rssched.client.SyntheticTestData.TransitScenario;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.Vehicles;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * @author munterfi
+ */
+class TransitVehicleMaskTest {
+
+    @ParameterizedTest
+    @ValueSource(doubles = {0, 0.1, 0.5, 1})
+    void keepVehiclesAndTypesOfSelectedLines(double share) {
+        Scenario scenario = TransitScenario.create(40, 1);
+        Set<Id<TransitLine>> lineIds = TransitScenario.selectLines(scenario, share, 2);
+        Set<Id<Vehicle>> expectedVehicleIds = new HashSet<>();
+        Set<Id<VehicleType>> expectedVehicleTypeIds = new HashSet<>();
+        Vehicles vehicles = scenario.getTransitVehicles();
+        for (Id<TransitLine> lineId : lineIds) {
+            TransitLine line = scenario.getTransitSchedule().getTransitLines().get(lineId);
+            for (TransitRoute route : line.getRoutes().values()) {
+                for (Departure departure : route.getDepartures().values()) {
+                    expectedVehicleIds.add(departure.getVehicleId());
+                    expectedVehicleTypeIds.add(vehicles.getVehicles().get(departure.getVehicleId()).getType().getId());
+                }
+            }
+        }
+        // the schedule mask runs first in the pipeline
+        new TransitScheduleMask(Set.of()).apply(TransitScheduleMaskTest.pipe(scenario, lineIds));
+
+        new TransitVehicleMask().apply(TransitScheduleMaskTest.pipe(scenario, lineIds));
+
+        assertEquals(expectedVehicleIds, vehicles.getVehicles().keySet());
+        assertEquals(expectedVehicleTypeIds, vehicles.getVehicleTypes().keySet());
+        assertFalse(vehicles.getVehicles().containsKey(Id.createVehicleId("spare")));
+        assertFalse(vehicles.getVehicleTypes().containsKey(Id.create("unused", VehicleType.class)));
+    }
+}
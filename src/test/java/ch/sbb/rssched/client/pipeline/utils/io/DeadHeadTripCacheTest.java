@@ -0,0 +1,191 @@
+package ch.sbb.rssched.client.pipeline.utils.io;
+
+import ch.sbb.rssched.client.pipeline.request.TrainNetworkRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author munterfi
+ */
+class DeadHeadTripCacheTest {
+    private static final Set<String> MODES = Set.of("rail");
+    private static final double SPEED_LIMIT = 30;
+    private static final double BEELINE_FACTOR = 1.5;
+    private static final TrainNetworkRouter.PathResult RESULT = new TrainNetworkRouter.PathResult(120, 3000);
+
+    @TempDir
+    Path cacheDirectory;
+
+    private Network network;
+    private TransitScheduleFactory scheduleFactory;
+    private TransitStopFacility origin;
+    private TransitStopFacility destination;
+
+    @BeforeEach
+    void setUp() {
+        Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+        network = scenario.getNetwork();
+        NetworkFactory networkFactory = network.getFactory();
+        Node a = networkFactory.createNode(Id.createNodeId("a"), new Coord(0, 0));
+        Node b = networkFactory.createNode(Id.createNodeId("b"), new Coord(3000, 0));
+        network.addNode(a);
+        network.addNode(b);
+        addLink(networkFactory, "ab", a, b);
+        addLink(networkFactory, "ba", b, a);
+        scheduleFactory = scenario.getTransitSchedule().getFactory();
+        origin = createFacility("A", "ab");
+        destination = createFacility("B", "ba");
+    }
+
+    @Test
+    void missWithoutCacheFile() {
+        DeadHeadTripCache cache = load();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(origin, destination));
+    }
+
+    @Test
+    void hitAfterSave() {
+        DeadHeadTripCache cache = load();
+        cache.put(origin, destination, RESULT);
+        cache.save();
+
+        DeadHeadTripCache loaded = load();
+
+        assertEquals(loaded.getFilePath(), cache.getFilePath());
+        assertEquals(1, loaded.size());
+        assertEquals(RESULT, loaded.get(origin, destination));
+        assertNull(loaded.get(destination, origin));
+    }
+
+    @Test
+    void missIfLocationMovesToAnotherLink() {
+        TransitStopFacility other = createFacility("C", "ab");
+        DeadHeadTripCache cache = load();
+        cache.put(origin, destination, RESULT);
+        cache.put(destination, other, RESULT);
+        cache.save();
+
+        DeadHeadTripCache loaded = load();
+        TransitStopFacility moved = createFacility("A", "ba");
+
+        // the relations of the moved location are missing, the relations between the other locations are kept
+        assertEquals(cache.getFilePath(), loaded.getFilePath());
+        assertEquals(RESULT, loaded.get(origin, destination));
+        assertNull(loaded.get(moved, destination));
+        assertEquals(RESULT, loaded.get(destination, other));
+        assertNull(loaded.get(destination, createFacility("C", "ba")));
+    }
+
+    @Test
+    void missIfRoutingParametersChange() {
+        DeadHeadTripCache cache = load();
+        cache.put(origin, destination, RESULT);
+        cache.save();
+
+        DeadHeadTripCache changed = DeadHeadTripCache.load(cacheDirectory.toString(), network, MODES, SPEED_LIMIT + 1,
+                BEELINE_FACTOR);
+
+        assertNotEquals(cache.getFilePath(), changed.getFilePath());
+        assertEquals(0, changed.size());
+    }
+
+    @Test
+    void discardCorruptCacheFile() throws IOException {
+        String filePath = load().getFilePath();
+        try (Writer writer = new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(Paths.get(filePath))), StandardCharsets.UTF_8)) {
+            writer.write("origin_id,destination_id,origin_link_id,destination_link_id,duration,distance\n" +
+                    "A,B,ab,ba,120,3000\nB,A,ba,ab,not a number,3000\n");
+        }
+
+        DeadHeadTripCache cache = load();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(origin, destination));
+    }
+
+    @Test
+    void discardTruncatedCacheFile() throws IOException {
+        String filePath = load().getFilePath();
+        try (OutputStream outputStream = Files.newOutputStream(Paths.get(filePath))) {
+            outputStream.write(new byte[]{0x1f, (byte) 0x8b, 0x08});
+        }
+
+        assertEquals(0, load().size());
+    }
+
+    @Test
+    void saveReplacesFileAtomically() throws IOException {
+        DeadHeadTripCache cache = load();
+        cache.save();
+        // nothing to write without new results
+        assertEquals(0, countFiles());
+
+        cache.put(origin, destination, RESULT);
+        cache.save();
+        DeadHeadTripCache loaded = load();
+        loaded.put(destination, origin, RESULT);
+        loaded.save();
+
+        // the temporary file is moved onto the cache file, which contains all results
+        assertEquals(1, countFiles());
+        assertTrue(Files.exists(Paths.get(cache.getFilePath())));
+        assertEquals(2, load().size());
+    }
+
+    private DeadHeadTripCache load() {
+        return DeadHeadTripCache.load(cacheDirectory.toString(), network, MODES, SPEED_LIMIT, BEELINE_FACTOR);
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            return files.count();
+        }
+    }
+
+    private void addLink(NetworkFactory networkFactory, String id, Node from, Node to) {
+        Link link = networkFactory.createLink(Id.createLinkId(id), from, to);
+        link.setLength(3000);
+        link.setFreespeed(25);
+        link.setAllowedModes(MODES);
+        network.addLink(link);
+    }
+
+    private TransitStopFacility createFacility(String id, String linkId) {
+        TransitStopFacility facility = scheduleFactory.createTransitStopFacility(
+                Id.create(id, TransitStopFacility.class), new Coord(0, 0), false);
+        facility.setLinkId(Id.createLinkId(linkId));
+        return facility;
+    }
+}
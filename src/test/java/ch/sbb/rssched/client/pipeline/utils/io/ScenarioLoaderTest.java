@@ -0,0 +1,61 @@
+package ch.sbb.rssched.client.pipeline.utils.io;
+
+import org.junit.jupiter.api.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * @author munterfi
+ */
+class ScenarioLoaderTest {
+    private static final int THREADS = 4;
+    private static final int ID_COUNT = 20_000;
+
+    @Test
+    void createIdsConcurrently() throws Exception {
+        // the concurrent readers create ids of the same types, e.g. the links referenced by the network and the routes
+        Callable<List<Id<Link>>> createIds = () -> {
+            List<Id<Link>> ids = new ArrayList<>(ID_COUNT);
+            for (int i = 0; i < ID_COUNT; i++) {
+                ids.add(Id.createLinkId("concurrent_" + i));
+            }
+            return ids;
+        };
+        List<List<Id<Link>>> results = new ArrayList<>(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<List<Id<Link>>>> futures = new ArrayList<>(THREADS);
+            for (int thread = 0; thread < THREADS; thread++) {
+                futures.add(executor.submit(createIds));
+            }
+            for (Future<List<Id<Link>>> future : futures) {
+                results.add(future.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // each id exists once, with its own index
+        Set<Integer> indices = new HashSet<>();
+        for (int i = 0; i < ID_COUNT; i++) {
+            Id<Link> id = results.get(0).get(i);
+            for (List<Id<Link>> result : results) {
+                assertSame(id, result.get(i));
+            }
+            indices.add(id.index());
+        }
+        assertEquals(ID_COUNT, indices.size());
+    }
+}